@@ -0,0 +1,180 @@
+package server;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.Instant;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Access log: one JSON line per request (time, client, command, bytes in/out,
+ * latency, status), written by a background thread to a rolling file.
+ *
+ * Request threads only drop a record into a bounded lock‑free ring (many producers,
+ * one consumer) – no console lock, no I/O, no formatting on the request path.
+ * If the writer falls behind and the ring is full, records are dropped and counted;
+ * the count is logged once there is room again.
+ *
+ * Successful requests are sampled (sample = 1.0 logs all); errors are always logged.
+ * Request data and reply status are cut to payloadMax characters; credentials
+ * never get here (VoterServer.redact keeps only the CNIC they belong to).
+ */
+final class AccessLog {
+
+    record Entry(long at, String client, String cmd, String data, long bytesIn, long bytesOut,
+                 long nanos, String status) { }
+
+    private final AtomicReferenceArray<Entry> ring;
+    private final int        mask;
+    private final AtomicLong head = new AtomicLong();        // next slot to claim
+    private volatile long    tail;                           // next slot the writer reads
+    private final LongAdder  dropped = new LongAdder();
+
+    private final double sample;
+    private final int    payloadMax;
+    private final Path   file;
+    private final long   maxBytes;
+    private final int    keep;
+
+    /** file null = logging off */
+    AccessLog(Path file, int ringSize, double sample, int payloadMax, long maxBytes, int keep) {
+        int cap = Integer.highestOneBit(Math.max(2, ringSize - 1)) << 1;    // next power of two
+        this.ring       = new AtomicReferenceArray<>(cap);
+        this.mask       = cap - 1;
+        this.sample     = sample;
+        this.payloadMax = payloadMax;
+        this.file       = file;
+        this.maxBytes   = maxBytes;
+        this.keep       = keep;
+        if (file == null) return;
+
+        Thread t = new Thread(this::drain, "ems-access-log");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    /** called on the request thread once the reply is encoded */
+    void log(String client, String cmd, String data, long bytesIn, long bytesOut, long nanos, String status) {
+        if (file == null) return;
+        boolean error = status != null && status.startsWith("ERROR");
+        if (!error && sample < 1.0 && ThreadLocalRandom.current().nextDouble() >= sample) return;
+
+        long h;
+        do {
+            h = head.get();
+            if (h - tail >= ring.length()) { dropped.increment(); return; }
+        } while (!head.compareAndSet(h, h + 1));
+        ring.lazySet((int) (h & mask), new Entry(System.currentTimeMillis(), client, cmd,
+                                                 cut(data), bytesIn, bytesOut, nanos, cut(status)));
+    }
+
+    long dropped() { return dropped.sum(); }
+
+    /* ========================================================= */
+
+    private String cut(String s) {
+        return s == null || s.length() <= payloadMax ? s : s.substring(0, payloadMax) + "…";
+    }
+
+    /** single consumer: ring → file, flushing whenever the ring runs empty */
+    private void drain() {
+        Writer  w       = null;
+        long    size    = 0;
+        long    lost    = 0;
+        StringBuilder sb = new StringBuilder(256);
+        while (true) {
+            try {
+                if (w == null) {
+                    w    = open();
+                    size = Files.size(file);
+                }
+                Entry e = ring.get((int) (tail & mask));
+                if (e == null) {                                   // empty, or claimed but not yet stored
+                    w.flush();
+                    long d = dropped.sum();
+                    if (d != lost) {
+                        sb.setLength(0);
+                        sb.append("{\"ts\":\"").append(Instant.now()).append("\",\"dropped\":").append(d - lost).append("}\n");
+                        w.write(sb.toString());
+                        size += sb.length();
+                        lost = d;
+                    }
+                    LockSupport.parkNanos(2_000_000);
+                    continue;
+                }
+                ring.lazySet((int) (tail & mask), null);
+                tail = tail + 1;                                   // single writer – volatile store frees the slot
+
+                sb.setLength(0);
+                format(e, sb);
+                w.write(sb.toString());
+                size += sb.length();
+                if (size > maxBytes) {
+                    w.close();
+                    w = null;
+                    roll();
+                }
+            } catch (IOException ex) {
+                System.out.println("⚠️ access log: " + ex.getMessage());
+                try { if (w != null) w.close(); } catch (IOException ignored) { }
+                w = null;
+                LockSupport.parkNanos(1_000_000_000L);
+            }
+        }
+    }
+
+    private Writer open() throws IOException {
+        Path dir = file.toAbsolutePath().getParent();
+        if (dir != null) Files.createDirectories(dir);
+        return new BufferedWriter(new OutputStreamWriter(
+                Files.newOutputStream(file, StandardOpenOption.CREATE, StandardOpenOption.APPEND),
+                StandardCharsets.UTF_8), 64 * 1024);
+    }
+
+    /** access.log → access.log.1 → … → access.log.keep (dropped) */
+    private void roll() throws IOException {
+        for (int i = keep - 1; i >= 1; i--) {
+            Path from = file.resolveSibling(file.getFileName() + "." + i);
+            if (Files.exists(from))
+                Files.move(from, file.resolveSibling(file.getFileName() + "." + (i + 1)), StandardCopyOption.REPLACE_EXISTING);
+        }
+        if (keep > 0) Files.move(file, file.resolveSibling(file.getFileName() + ".1"), StandardCopyOption.REPLACE_EXISTING);
+        else Files.delete(file);
+    }
+
+    private static void format(Entry e, StringBuilder sb) {
+        sb.append("{\"ts\":\"").append(Instant.ofEpochMilli(e.at())).append('"');
+        sb.append(",\"ip\":");     str(sb, e.client());
+        sb.append(",\"cmd\":");    str(sb, e.cmd());
+        sb.append(",\"in\":").append(e.bytesIn());
+        sb.append(",\"out\":").append(e.bytesOut());
+        sb.append(",\"ms\":").append(e.nanos() / 1_000 / 1000.0);
+        sb.append(",\"status\":"); str(sb, e.status());
+        sb.append(",\"data\":");   str(sb, e.data());
+        sb.append("}\n");
+    }
+
+    private static void str(StringBuilder sb, String s) {
+        if (s == null) { sb.append("null"); return; }
+        sb.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"'  -> sb.append("\\\"");
+                case '\\' -> sb.append("\\\\");
+                case '\n' -> sb.append("\\n");
+                case '\r' -> sb.append("\\r");
+                case '\t' -> sb.append("\\t");
+                default   -> {
+                    if (c < 0x20) sb.append(String.format("\\u%04x", (int) c));
+                    else sb.append(c);
+                }
+            }
+        }
+        sb.append('"');
+    }
+}
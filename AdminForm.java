@@ -21,66 +21,27 @@ public class AdminForm extends javax.swing.JFrame {
     
     public AdminForm() {
         initComponents();
-        loadVotersCount();
-        loadPartiesCount();
-        loadCandidatesCount(); 
+        loadCounts();
     }
     
-    private void loadVotersCount() {
-        SwingWorker<Integer, Void> worker = new SwingWorker<>() {
+    /* voters, parties and candidates in one server round trip */
+    private void loadCounts() {
+        SwingWorker<int[], Void> worker = new SwingWorker<>() {
             @Override
-            protected Integer doInBackground() {
-                return ServerClient.getVotersNumber(); // call to server
+            protected int[] doInBackground() {
+                return ServerClient.getDashboardCounts(); // one batch call to server
             }
 
             @Override
             protected void done() {
                 try {
-                    int count = get();
-                    voterscount.setText("Total Voters: " + count);
+                    int[] c = get();
+                    voterscount.setText("Total Voters: " + c[0]);
+                    p_Count.setText("Total Parties: " + c[1]);
+                    C_Count.setText("Total Candidates: " + c[2]);
                 } catch (Exception e) {
                     voterscount.setText("Total Voters: Error");
-                    e.printStackTrace();
-                }
-            }
-        };
-        worker.execute();
-    }
-
-    private void loadPartiesCount() {
-        SwingWorker<Integer, Void> worker = new SwingWorker<>() {
-            @Override
-            protected Integer doInBackground() {
-                return ServerClient.getPartiesCount(); // call to server
-            }
-
-            @Override
-            protected void done() {
-                try {
-                    int count = get();
-                    p_Count.setText("Total Parties: " + count);
-                } catch (Exception e) {
                     p_Count.setText("Total Parties: Error");
-                    e.printStackTrace();
-                }
-            }
-        };
-        worker.execute();
-    }
-
-    private void loadCandidatesCount() {
-        SwingWorker<Integer, Void> worker = new SwingWorker<>() {
-            @Override
-            protected Integer doInBackground() {
-                return ServerClient.getCandidatesCount(); // call to server
-            }
-
-            @Override
-            protected void done() {
-                try {
-                    int count = get();
-                    C_Count.setText("Total Candidates: " + count);
-                } catch (Exception e) {
                     C_Count.setText("Total Candidates: Error");
                     e.printStackTrace();
                 }
@@ -123,6 +84,7 @@ public class AdminForm extends javax.swing.JFrame {
         jButton9 = new javax.swing.JButton();
         jLabel11 = new javax.swing.JLabel();
         jButton10 = new javax.swing.JButton();
+        jButton19 = new javax.swing.JButton();
         jPanel4 = new javax.swing.JPanel();
         jScrollPane2 = new javax.swing.JScrollPane();
         T_Party = new javax.swing.JTable();
@@ -144,6 +106,7 @@ public class AdminForm extends javax.swing.JFrame {
         S_candidates = new javax.swing.JTextField();
         jButton11 = new javax.swing.JButton();
         jButton17 = new javax.swing.JButton();
+        jButton20 = new javax.swing.JButton();
         jButton5 = new javax.swing.JButton();
         jButton15 = new javax.swing.JButton();
         jLabel2 = new javax.swing.JLabel();
@@ -401,6 +364,15 @@ public class AdminForm extends javax.swing.JFrame {
             }
         });
 
+        jButton19.setBackground(new java.awt.Color(0, 102, 51));
+        jButton19.setForeground(new java.awt.Color(255, 255, 255));
+        jButton19.setText("Export CSV");
+        jButton19.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                jButton19ActionPerformed(evt);
+            }
+        });
+
         javax.swing.GroupLayout jPanel3Layout = new javax.swing.GroupLayout(jPanel3);
         jPanel3.setLayout(jPanel3Layout);
         jPanel3Layout.setHorizontalGroup(
@@ -415,6 +387,8 @@ public class AdminForm extends javax.swing.JFrame {
                 .addGap(45, 45, 45)
                 .addComponent(jButton9, javax.swing.GroupLayout.PREFERRED_SIZE, 110, javax.swing.GroupLayout.PREFERRED_SIZE)
                 .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED, javax.swing.GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE)
+                .addComponent(jButton19, javax.swing.GroupLayout.PREFERRED_SIZE, 120, javax.swing.GroupLayout.PREFERRED_SIZE)
+                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED, javax.swing.GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE)
                 .addComponent(jButton10, javax.swing.GroupLayout.PREFERRED_SIZE, 130, javax.swing.GroupLayout.PREFERRED_SIZE)
                 .addGap(49, 49, 49))
             .addGroup(jPanel3Layout.createParallelGroup(javax.swing.GroupLayout.Alignment.LEADING)
@@ -432,6 +406,7 @@ public class AdminForm extends javax.swing.JFrame {
                 .addGap(32, 32, 32)
                 .addGroup(jPanel3Layout.createParallelGroup(javax.swing.GroupLayout.Alignment.BASELINE)
                     .addComponent(jButton9, javax.swing.GroupLayout.PREFERRED_SIZE, 40, javax.swing.GroupLayout.PREFERRED_SIZE)
+                    .addComponent(jButton19, javax.swing.GroupLayout.PREFERRED_SIZE, 40, javax.swing.GroupLayout.PREFERRED_SIZE)
                     .addComponent(jButton10, javax.swing.GroupLayout.PREFERRED_SIZE, 40, javax.swing.GroupLayout.PREFERRED_SIZE))
                 .addGap(18, 18, 18))
             .addGroup(jPanel3Layout.createParallelGroup(javax.swing.GroupLayout.Alignment.LEADING)
@@ -652,6 +627,15 @@ public class AdminForm extends javax.swing.JFrame {
             }
         });
 
+        jButton20.setBackground(new java.awt.Color(0, 102, 51));
+        jButton20.setForeground(new java.awt.Color(255, 255, 255));
+        jButton20.setText("Export CSV");
+        jButton20.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                jButton20ActionPerformed(evt);
+            }
+        });
+
         javax.swing.GroupLayout jPanel6Layout = new javax.swing.GroupLayout(jPanel6);
         jPanel6.setLayout(jPanel6Layout);
         jPanel6Layout.setHorizontalGroup(
@@ -670,6 +654,8 @@ public class AdminForm extends javax.swing.JFrame {
                 .addGap(38, 38, 38)
                 .addComponent(jButton11, javax.swing.GroupLayout.PREFERRED_SIZE, 110, javax.swing.GroupLayout.PREFERRED_SIZE)
                 .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED, javax.swing.GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE)
+                .addComponent(jButton20, javax.swing.GroupLayout.PREFERRED_SIZE, 120, javax.swing.GroupLayout.PREFERRED_SIZE)
+                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED, javax.swing.GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE)
                 .addComponent(jButton17, javax.swing.GroupLayout.PREFERRED_SIZE, 126, javax.swing.GroupLayout.PREFERRED_SIZE)
                 .addGap(38, 38, 38))
         );
@@ -684,6 +670,7 @@ public class AdminForm extends javax.swing.JFrame {
                 .addGap(41, 41, 41)
                 .addGroup(jPanel6Layout.createParallelGroup(javax.swing.GroupLayout.Alignment.BASELINE)
                     .addComponent(jButton11, javax.swing.GroupLayout.PREFERRED_SIZE, 40, javax.swing.GroupLayout.PREFERRED_SIZE)
+                    .addComponent(jButton20, javax.swing.GroupLayout.PREFERRED_SIZE, 40, javax.swing.GroupLayout.PREFERRED_SIZE)
                     .addComponent(jButton17, javax.swing.GroupLayout.PREFERRED_SIZE, 40, javax.swing.GroupLayout.PREFERRED_SIZE))
                 .addGap(16, 16, 16))
         );
@@ -766,6 +753,10 @@ public class AdminForm extends javax.swing.JFrame {
         Search.searchAllCandidates(T_candidates);
     }//GEN-LAST:event_jButton17ActionPerformed
 
+    private void jButton20ActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_jButton20ActionPerformed
+        Search.exportCandidateList(S_candidates, this);
+    }//GEN-LAST:event_jButton20ActionPerformed
+
     private void jButton11ActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_jButton11ActionPerformed
         // TODO add your handling code here:
         Search.searchCandidatesBySeat(S_candidates,T_candidates);
@@ -798,6 +789,10 @@ public class AdminForm extends javax.swing.JFrame {
         Search.searchAllVoters(T_Voter);
     }//GEN-LAST:event_jButton10ActionPerformed
 
+    private void jButton19ActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_jButton19ActionPerformed
+        Search.exportVoterRoll(null, this);
+    }//GEN-LAST:event_jButton19ActionPerformed
+
     private void jButton9ActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_jButton9ActionPerformed
         // TODO add your handling code here:
         Search.searchVoterByCnic(S_Voter, T_Voter);
@@ -895,7 +890,9 @@ public class AdminForm extends javax.swing.JFrame {
     private javax.swing.JButton jButton15;
     private javax.swing.JButton jButton17;
     private javax.swing.JButton jButton18;
+    private javax.swing.JButton jButton19;
     private javax.swing.JButton jButton2;
+    private javax.swing.JButton jButton20;
     private javax.swing.JButton jButton3;
     private javax.swing.JButton jButton4;
     private javax.swing.JButton jButton5;
@@ -0,0 +1,94 @@
+package server;
+
+import java.sql.*;
+import java.util.*;
+
+/**
+ * Seat → sorted CNIC keys of its candidates, for castVote's "candidate on seat?" check.
+ * Loaded once from Candidates, kept up to date by registerCandidate.
+ * Lookups are a hash probe plus a binary search over a long[] – no allocation, no DB.
+ * Writers copy the seat's array (copy‑on‑write): candidates are added a few times a year.
+ * Name and party per CNIC come along for the result tables.
+ */
+final class CandidateIndex {
+
+    record Info(String cnic, String name, String party) { }
+
+    private final DbPool pool;
+    private volatile Map<String, long[]> bySeat;             // null until loaded; seat upper‑cased
+    private volatile Map<Long, Info>     info = Map.of();
+
+    CandidateIndex(DbPool pool) {
+        this.pool = pool;
+        try (Connection c = pool.borrow()) { load(c); }
+        catch (SQLException e) { System.out.println("⚠️ candidate index: " + e.getMessage() + " – will retry"); }
+    }
+
+    /** seat must already be trimmed and upper‑cased */
+    boolean contains(String seat, long cnic) throws SQLException {
+        Map<String, long[]> m = bySeat;
+        if (m == null) {
+            try (Connection c = pool.borrow()) { m = load(c); }
+        }
+        long[] keys = m.get(seat);
+        return keys != null && Arrays.binarySearch(keys, cnic) >= 0;
+    }
+
+    /** every seat with at least one candidate */
+    Set<String> seats() throws SQLException {
+        Map<String, long[]> m = bySeat;
+        if (m == null) {
+            try (Connection c = pool.borrow()) { m = load(c); }
+        }
+        return m.keySet();
+    }
+
+    /** name and party of a candidate, null if unknown */
+    Info info(String cnic) throws SQLException {
+        if (bySeat == null) {
+            try (Connection c = pool.borrow()) { load(c); }
+        }
+        return info.get(Cnic.key(cnic));
+    }
+
+    synchronized Map<String, long[]> load(Connection c) throws SQLException {
+        Map<String, List<Long>> tmp   = new HashMap<>();
+        Map<Long, Info>         names = new HashMap<>();
+        try (Statement st = c.createStatement();
+             ResultSet rs = st.executeQuery("SELECT ConstitutionSeat, CNIC, CandidateName, PartyName FROM Candidates")) {
+            while (rs.next()) {
+                long k = Cnic.key(rs.getString(2));
+                if (k < 0) continue;
+                tmp.computeIfAbsent(rs.getString(1).trim().toUpperCase(), s -> new ArrayList<>()).add(k);
+                names.put(k, new Info(rs.getString(2), rs.getString(3), rs.getString(4)));
+            }
+        }
+        Map<String, long[]> m = new HashMap<>(tmp.size() * 2);
+        tmp.forEach((seat, list) -> m.put(seat, list.stream().mapToLong(Long::longValue).sorted().toArray()));
+        info   = names;
+        bySeat = m;
+        return m;
+    }
+
+    /** after a successful INSERT INTO Candidates */
+    synchronized void add(String seat, String cnic, String name, String party) {
+        Map<String, long[]> m = bySeat;
+        long k = Cnic.key(cnic);
+        if (m == null || k < 0) return;                         // not loaded yet – the load will see it
+
+        Map<Long, Info> names = new HashMap<>(info);
+        names.put(k, new Info(cnic, name, party));
+        info = names;
+
+        String s = seat.trim().toUpperCase();
+        long[] old = m.getOrDefault(s, new long[0]);
+        if (Arrays.binarySearch(old, k) >= 0) return;
+        long[] keys = Arrays.copyOf(old, old.length + 1);
+        keys[old.length] = k;
+        Arrays.sort(keys);
+
+        Map<String, long[]> next = new HashMap<>(m);
+        next.put(s, keys);
+        bySeat = next;
+    }
+}
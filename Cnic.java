@@ -0,0 +1,33 @@
+package server;
+
+/**
+ * CNIC as a 64‑bit key: its 13 digits read as one number, dashes ignored,
+ * so "35202-1234567-1" and "3520212345671" are the same voter.
+ * Parsing allocates nothing – it runs on every vote.
+ */
+final class Cnic {
+
+    private Cnic() {}
+
+    static final int DIGITS = 13;
+
+    /** key of s, or -1 if s is not 13 digits (with or without dashes) */
+    static long key(CharSequence s) {
+        if (s == null) return -1;
+        long k = 0;
+        int  n = 0;
+        for (int i = 0, len = s.length(); i < len; i++) {
+            char ch = s.charAt(i);
+            if (ch == '-') continue;
+            if (ch < '0' || ch > '9' || ++n > DIGITS) return -1;
+            k = k * 10 + (ch - '0');
+        }
+        return n == DIGITS ? k : -1;
+    }
+
+    /** "3520212345671", or "35202-1234567-1" when dashed */
+    static String format(long key, boolean dashed) {
+        String d = String.format(java.util.Locale.ROOT, "%013d", key);
+        return dashed ? d.substring(0, 5) + "-" + d.substring(5, 12) + "-" + d.substring(12) : d;
+    }
+}
@@ -0,0 +1,115 @@
+package server;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per‑command latency histograms with request, error and byte counters –
+ * read by the "stats" command and optionally appended to a file every dumpMs.
+ *
+ * Latencies are kept in microseconds in log‑linear buckets: exact below 64 µs,
+ * then 32 buckets per power of two (≤ 3 % error) up to ~19 h.  Recording is one
+ * atomic increment; there is no lock and nothing to allocate.
+ * Only known command names get their own entry, anything else counts as "other".
+ */
+final class CommandStats {
+
+    private static final int SUB     = 32;                   // buckets per power of two
+    private static final int BUCKETS = 1024;                 // up to 2^36 µs
+
+    static final class Cmd {
+        final AtomicLongArray hist     = new AtomicLongArray(BUCKETS);
+        final LongAdder       count    = new LongAdder();
+        final LongAdder       errors   = new LongAdder();
+        final LongAdder       bytesIn  = new LongAdder();
+        final LongAdder       bytesOut = new LongAdder();
+        final AtomicLong      maxMicros = new AtomicLong();
+
+        /** latency in µs at quantile q (0..1), from the bucket's upper edge */
+        long quantile(double q) {
+            long n = count.sum();
+            if (n == 0) return 0;
+            long want = Math.max(1, (long) Math.ceil(q * n)), seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += hist.get(i);
+                if (seen >= want) return Math.min(upper(i), maxMicros.get());
+            }
+            return maxMicros.get();
+        }
+    }
+
+    private final Set<String> known;
+    private volatile Map<String, Cmd> cmds = new ConcurrentHashMap<>();
+
+    CommandStats(Collection<String> known, Path dumpFile, long dumpMs) {
+        this.known = Set.copyOf(known);
+        if (dumpFile == null) return;
+        ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "ems-stats");
+            t.setDaemon(true);
+            return t;
+        });
+        timer.scheduleWithFixedDelay(() -> dump(dumpFile), dumpMs, dumpMs, TimeUnit.MILLISECONDS);
+    }
+
+    void record(String cmd, long nanos, long bytesIn, long bytesOut, boolean error) {
+        Cmd c = cmds.computeIfAbsent(known.contains(cmd) ? cmd : "other", k -> new Cmd());
+        long us = Math.max(0, nanos / 1_000);
+        c.hist.incrementAndGet(bucket(us));
+        c.count.increment();
+        if (error) c.errors.increment();
+        c.bytesIn.add(bytesIn);
+        c.bytesOut.add(bytesOut);
+        c.maxMicros.accumulateAndGet(us, Math::max);
+    }
+
+    /** command → its counters, busiest first */
+    List<Map.Entry<String, Cmd>> snapshot() {
+        List<Map.Entry<String, Cmd>> out = new ArrayList<>(cmds.entrySet());
+        out.sort((a, b) -> Long.compare(b.getValue().count.sum(), a.getValue().count.sum()));
+        return out;
+    }
+
+    /** starts every histogram afresh */
+    void reset() { cmds = new ConcurrentHashMap<>(); }
+
+    /* ========================================================= */
+
+    static int bucket(long us) {
+        if (us < 2 * SUB) return (int) us;
+        int k   = 63 - Long.numberOfLeadingZeros(us);           // us in [2^k, 2^(k+1))
+        int idx = (k - 4) * SUB + (int) (us >>> (k - 5)) - SUB;
+        return Math.min(idx, BUCKETS - 1);
+    }
+
+    static long upper(int idx) {
+        if (idx < 2 * SUB) return idx;
+        int k = idx / SUB + 4;
+        long lower = (long) (idx % SUB + SUB) << (k - 5);
+        return lower + (1L << (k - 5)) - 1;
+    }
+
+    private void dump(Path file) {
+        if (cmds.isEmpty()) return;
+        StringBuilder sb = new StringBuilder("# ").append(Instant.now())
+                .append("  cmd count errors p50ms p99ms p999ms maxms bytesIn bytesOut\n");
+        for (Map.Entry<String, Cmd> e : snapshot()) {
+            Cmd c = e.getValue();
+            sb.append(String.format(Locale.ROOT, "%s %d %d %.3f %.3f %.3f %.3f %d %d%n", e.getKey(), c.count.sum(), c.errors.sum(),
+                    c.quantile(0.50) / 1e3, c.quantile(0.99) / 1e3, c.quantile(0.999) / 1e3, c.maxMicros.get() / 1e3,
+                    c.bytesIn.sum(), c.bytesOut.sum()));
+        }
+        try {
+            Files.writeString(file, sb, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            System.out.println("⚠️ stats dump: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package server;
+
+import java.lang.reflect.*;
+import java.sql.*;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Built‑in JDBC pool shared by every VoterServer command handler.
+ *  • MIN connections opened up front, never more than MAX open at once
+ *  • idle connections are validated on borrow (skipped if used in the last second)
+ *  • a connection held longer than leakMs is reported once, with the holder's current stack –
+ *    or, with traceBorrows, the stack of the borrow() call (costs a Throwable per borrow)
+ *  • metrics: active / idle / waiting, borrow wait time, timeouts
+ *
+ * borrow() hands out a proxy – closing it returns the physical connection to the pool,
+ * so call sites keep their usual try‑with‑resources.
+ */
+final class DbPool {
+
+    private static final long ALIVE_BYPASS_MS = 1_000;      // recently returned → trust without ping
+    private static final long IDLE_EVICT_MS   = 10 * 60_000; // idle above MIN are closed after this
+
+    private final String url, user, pass;
+    private final int    min, max;
+    private final long   borrowTimeoutMs, leakMs;
+    private final boolean traceBorrows;
+
+    private final Semaphore                     permits;
+    private final BlockingDeque<Idle>           idle   = new LinkedBlockingDeque<>();
+    private final Map<Connection, Lease>        active = new ConcurrentHashMap<>();
+    private final AtomicLong                    open   = new AtomicLong();
+
+    /* metrics */
+    private final LongAdder  borrows   = new LongAdder();
+    private final LongAdder  waitNanos = new LongAdder();
+    private final LongAdder  timeouts  = new LongAdder();
+    private final LongAdder  leaks     = new LongAdder();
+    private final AtomicLong maxWait   = new AtomicLong();
+    private final AtomicLong waiting   = new AtomicLong();
+
+    private record Idle(Connection raw, long since) { }
+
+    private static final class Lease {
+        final Connection raw;
+        final long       since = System.currentTimeMillis();
+        final Thread     owner = Thread.currentThread();
+        final Throwable  borrowedAt;                // null unless traceBorrows
+        volatile boolean reported;
+        Lease(Connection raw, Throwable borrowedAt) { this.raw = raw; this.borrowedAt = borrowedAt; }
+    }
+
+    DbPool(String url, String user, String pass, int min, int max, long borrowTimeoutMs, long leakMs,
+           boolean traceBorrows) {
+        this.url = url;  this.user = user;  this.pass = pass;
+        this.min = min;  this.max  = max;
+        this.borrowTimeoutMs = borrowTimeoutMs;
+        this.leakMs          = leakMs;
+        this.traceBorrows    = traceBorrows;
+        this.permits         = new Semaphore(max, true);
+
+        for (int i = 0; i < min; i++) {
+            try { idle.offer(new Idle(openRaw(), System.currentTimeMillis())); }
+            catch (SQLException e) { System.out.println("⚠️ DB pool warm‑up: " + e.getMessage()); break; }
+        }
+
+        ScheduledExecutorService house = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "ems-dbpool");
+            t.setDaemon(true);
+            return t;
+        });
+        long period = Math.max(1_000, leakMs / 2);
+        house.scheduleWithFixedDelay(this::housekeeping, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /* ========================================================= */
+
+    Connection borrow() throws SQLException {
+        long t0 = System.nanoTime();
+        waiting.incrementAndGet();
+        try {
+            if (!permits.tryAcquire(borrowTimeoutMs, TimeUnit.MILLISECONDS)) {
+                timeouts.increment();
+                throw new SQLTransientConnectionException(
+                        "DB pool exhausted (" + max + " in use for " + borrowTimeoutMs + " ms)");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLTransientConnectionException("interrupted waiting for DB connection");
+        } finally {
+            waiting.decrementAndGet();
+        }
+
+        try {
+            Connection raw = null;
+            for (Idle i; raw == null && (i = idle.pollFirst()) != null; ) {
+                if (System.currentTimeMillis() - i.since() < ALIVE_BYPASS_MS || valid(i.raw())) raw = i.raw();
+                else discard(i.raw());
+            }
+            if (raw == null) raw = openRaw();
+
+            long waited = System.nanoTime() - t0;
+            borrows.increment();
+            waitNanos.add(waited);
+            maxWait.accumulateAndGet(waited, Math::max);
+
+            Connection proxy = wrap(raw);
+            active.put(proxy, new Lease(raw, traceBorrows ? new Throwable("borrowed here") : null));
+            return proxy;
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /** called by the proxy's close() */
+    private void giveBack(Connection proxy) {
+        Lease l = active.remove(proxy);
+        if (l == null) return;                          // double close
+        try {
+            if (l.raw.isClosed()) { open.decrementAndGet(); return; }
+            if (!l.raw.getAutoCommit()) { l.raw.rollback(); l.raw.setAutoCommit(true); }
+            idle.offerFirst(new Idle(l.raw, System.currentTimeMillis()));   // LIFO keeps hot connections hot
+        } catch (SQLException e) {
+            discard(l.raw);
+        } finally {
+            permits.release();
+        }
+    }
+
+    /** a connection outside the pool for a long‑lived owner (not counted, not leak‑checked) */
+    Connection dedicated() throws SQLException {
+        return DriverManager.getConnection(url, user, pass);
+    }
+
+    /* ---------- metrics ---------- */
+
+    int active()  { return active.size(); }
+    int idle()    { return idle.size(); }
+    int max()     { return max; }
+    long waiting() { return waiting.get(); }
+    long open()    { return open.get(); }
+    long borrows() { return borrows.sum(); }
+    long timeouts() { return timeouts.sum(); }
+    long leaks()   { return leaks.sum(); }
+    double waitSeconds() { return waitNanos.sum() / 1e9; }
+
+    String stats() {
+        long n = borrows.sum();
+        return String.format(Locale.ROOT, "active=%d,idle=%d,open=%d,max=%d,waiting=%d,borrows=%d,"
+                           + "avgWaitMs=%.3f,maxWaitMs=%.3f,timeouts=%d,leaks=%d",
+                active(), idle(), open.get(), max, waiting.get(), n,
+                n == 0 ? 0.0 : waitNanos.sum() / 1e6 / n, maxWait.get() / 1e6,
+                timeouts.sum(), leaks.sum());
+    }
+
+    /* ========================================================= */
+
+    private Connection openRaw() throws SQLException {
+        Connection c = DriverManager.getConnection(url, user, pass);
+        open.incrementAndGet();
+        return c;
+    }
+
+    private static boolean valid(Connection c) {
+        try { return c.isValid(2); } catch (SQLException e) { return false; }
+    }
+
+    private void discard(Connection c) {
+        open.decrementAndGet();
+        try { c.close(); } catch (SQLException ignored) { }
+    }
+
+    private void housekeeping() {
+        long now = System.currentTimeMillis();
+
+        /* leak detection */
+        for (Lease l : active.values()) {
+            if (!l.reported && now - l.since > leakMs) {
+                l.reported = true;
+                leaks.increment();
+                Throwable where = new Throwable("DB connection held " + (now - l.since)
+                                                + " ms by " + l.owner.getName());
+                where.setStackTrace(l.borrowedAt != null ? l.borrowedAt.getStackTrace() : l.owner.getStackTrace());
+                System.out.println("⚠️ possible DB connection leak");
+                where.printStackTrace(System.out);
+            }
+        }
+
+        /* shrink: close connections idle too long, but keep MIN around */
+        for (int i = idle.size(); i > 0 && open.get() > min; i--) {
+            Idle last = idle.pollLast();
+            if (last == null) break;
+            if (now - last.since() > IDLE_EVICT_MS) discard(last.raw());
+            else { idle.offerLast(last); break; }
+        }
+
+        /* grow back to MIN (e.g. after MySQL restarted) */
+        while (open.get() < min) {
+            try { idle.offerLast(new Idle(openRaw(), now)); }
+            catch (SQLException e) { break; }
+        }
+    }
+
+    private Connection wrap(Connection raw) {
+        InvocationHandler h = new InvocationHandler() {
+            private volatile boolean closed;
+            @Override public Object invoke(Object self, Method m, Object[] args) throws Throwable {
+                switch (m.getName()) {
+                    case "close"    -> { if (!closed) { closed = true; giveBack((Connection) self); } return null; }
+                    case "isClosed" -> { return closed || raw.isClosed(); }
+                    case "hashCode" -> { return System.identityHashCode(self); }
+                    case "equals"   -> { return self == args[0]; }
+                    case "toString" -> { return "pooled:" + raw; }
+                }
+                if (closed) throw new SQLException("connection already returned to pool");
+                try { return m.invoke(raw, args); }
+                catch (InvocationTargetException e) { throw e.getCause(); }
+            }
+        };
+        return (Connection) Proxy.newProxyInstance(DbPool.class.getClassLoader(),
+                                                   new Class<?>[]{Connection.class}, h);
+    }
+}
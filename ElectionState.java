@@ -0,0 +1,105 @@
+package server;
+
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+
+/**
+ * In‑memory copy of Election_Time for the hot paths (castVote, getElectionStatus,
+ * selectElectionStopTime).  Election_Time changes a handful of times a day:
+ *  • registerElectionTime / stopElectionTime reload it right after their UPDATE
+ *  • the MySQL EVENTS flip Status at StartTime / StopTime – we reload just after
+ *    the next such boundary
+ *  • a slow periodic reload catches edits made behind the server's back
+ * Every election seen moving to Finished is passed to the onFinish callback;
+ * onChange gets every snapshot whose status, active election or stop time differs
+ * from the one before (including the first).
+ */
+final class ElectionState {
+
+    private static final long BOUNDARY_GRACE_MS = 1_000;   // let the MySQL event fire first
+
+    /** latest election (by ID), the latest Started one (ids are -1 when there is none)
+        and every Finished one */
+    record Snapshot(int latestId, String status, int activeId, Timestamp activeStop, Set<Integer> finished) {
+
+        /** Started election still inside its window, or -1 */
+        int active() {
+            return activeId > 0 && (activeStop == null || System.currentTimeMillis() < activeStop.getTime())
+                   ? activeId : -1;
+        }
+    }
+
+    private final DbPool      pool;
+    private final IntConsumer onFinish;
+    private final Consumer<Snapshot> onChange;
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "ems-election");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private volatile Snapshot  snap;                        // null until the first successful load
+    private ScheduledFuture<?> boundary;                     // guarded by this
+
+    ElectionState(DbPool pool, long refreshMs, IntConsumer onFinish, Consumer<Snapshot> onChange) {
+        this.pool     = pool;
+        this.onFinish = onFinish;
+        this.onChange = onChange;
+        timer.scheduleWithFixedDelay(this::reload, 0, refreshMs, TimeUnit.MILLISECONDS);
+    }
+
+    /** current state; only the very first call after a failed start‑up load touches MySQL */
+    Snapshot current() throws SQLException {
+        Snapshot s = snap;
+        if (s != null) return s;
+        try (Connection c = pool.borrow()) { return reload(c); }
+    }
+
+    void reload() {
+        try (Connection c = pool.borrow()) { reload(c); }
+        catch (SQLException e) { System.out.println("⚠️ election state: " + e.getMessage()); }
+    }
+
+    /** re‑reads Election_Time on the caller's connection and re‑arms the boundary timer */
+    synchronized Snapshot reload(Connection c) throws SQLException {
+        String sql = "SELECT ID, Status, StartTime, StopTime FROM Election_Time ORDER BY ID DESC";
+        long now  = System.currentTimeMillis();
+        long next = Long.MAX_VALUE;
+        int latestId = -1, activeId = -1;
+        String    status = "NONE";
+        Timestamp stop   = null;
+        Set<Integer> finished = new HashSet<>();
+
+        try (Statement st = c.createStatement(); ResultSet rs = st.executeQuery(sql)) {
+            while (rs.next()) {
+                int       id = rs.getInt(1);
+                String    s  = rs.getString(2);
+                Timestamp a  = rs.getTimestamp(3), b = rs.getTimestamp(4);
+
+                if (latestId == -1) { latestId = id; status = s; }
+                if (activeId == -1 && "Started".equals(s)) { activeId = id; stop = b; }
+                if ("Finished".equals(s)) finished.add(id);
+
+                if ("Scheduled".equals(s) && a.getTime() > now) next = Math.min(next, a.getTime());
+                if (!"Finished".equals(s) && b.getTime() > now) next = Math.min(next, b.getTime());
+            }
+        }
+
+        Snapshot s    = new Snapshot(latestId, status, activeId, stop, Set.copyOf(finished));
+        Snapshot prev = snap;
+        snap = s;
+        if (prev != null)                                    // start‑up catches up on its own
+            for (int id : s.finished()) if (!prev.finished().contains(id)) onFinish.accept(id);
+        if (prev == null || prev.latestId() != s.latestId() || !prev.status().equals(s.status())
+                         || prev.activeId() != s.activeId() || !Objects.equals(prev.activeStop(), s.activeStop()))
+            onChange.accept(s);
+
+        if (boundary != null) boundary.cancel(false);
+        boundary = next == Long.MAX_VALUE ? null
+                 : timer.schedule(() -> reload(), next - now + BOUNDARY_GRACE_MS, TimeUnit.MILLISECONDS);
+        return s;
+    }
+}
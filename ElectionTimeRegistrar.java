@@ -4,8 +4,6 @@ import javax.swing.*;
 import java.time.*;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
-import java.util.ArrayList;
-import java.util.List;
 import javax.swing.table.DefaultTableModel;
 
 public final class ElectionTimeRegistrar {
@@ -99,7 +97,7 @@ public final class ElectionTimeRegistrar {
                                   java.awt.Component parent) {
 
         /* 1) election status */
-        String status = ServerClient.sendRequest("getElectionStatus", "").trim();
+        String status = ServerClient.electionStatus().trim();
         if (status.startsWith("ERROR")) { error(parent,status); return; }
 
         switch (status.toLowerCase()) {
@@ -145,30 +143,21 @@ public final class ElectionTimeRegistrar {
         if (hasNA && !hasPP && naRow==null){ warn(parent,"Select ONE NA candidate."); return; }
         if (hasPP && !hasNA && ppRow==null){ warn(parent,"Select ONE PP candidate."); return; }
 
-        /* 4) send vote(s) */
-        List<String> errors = new ArrayList<>();
-
-        if (naRow!=null){
-            String seat = m.getValueAt(naRow,seatCol).toString();
-            String cand = m.getValueAt(naRow,cnicCol).toString();
-            String rep  = ServerClient.sendRequest("castVote",
-                          voterCnic + "," + seat + "," + cand);
-            if (!rep.startsWith("OK")) errors.add("NA → "+rep);
-        }
-        if (ppRow!=null){
-            String seat = m.getValueAt(ppRow,seatCol).toString();
-            String cand = m.getValueAt(ppRow,cnicCol).toString();
-            String rep  = ServerClient.sendRequest("castVote",
-                          voterCnic + "," + seat + "," + cand);
-            if (!rep.startsWith("OK")) errors.add("PP → "+rep);
+        /* 4) send the whole ballot – recorded for every race or for none */
+        StringBuilder ballot = new StringBuilder(voterCnic);
+        for (Integer row : new Integer[]{naRow, ppRow}) {
+            if (row == null) continue;
+            ballot.append(',').append(m.getValueAt(row,seatCol))
+                  .append(',').append(m.getValueAt(row,cnicCol));
         }
+        String rep = ServerClient.sendRequest("castBallot", ballot.toString());
 
         /* 5) feedback */
-        if (errors.isEmpty()) {
+        if (rep.startsWith("OK")) {
             info(parent,"✅  Your vote has been recorded.\nThank you!");
             cast_T.clearSelection();
         } else {
-            error(parent,String.join("\n", errors));
+            error(parent,rep);
         }
     }
 
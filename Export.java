@@ -0,0 +1,114 @@
+package server;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.*;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bulk exports streamed straight from MySQL to the socket (text protocol only):
+ *
+ *   exportVoters;[seat]      CNIC,Name,PhoneNo,City,Status,NA,PP   – the whole roll, or one NA/PP seat
+ *   exportCandidates;[seat]  CNIC,Name,Type,Seat,Party,Symbol
+ *
+ * Reply: CHUNK;row;row;… lines of at most chunkRows rows, then END;<rows>.
+ * A failure part way ends the stream with an ERROR:… line instead.
+ *
+ * Rows come through a streaming ResultSet (fetch size MIN_VALUE), and a chunk is
+ * written before the next is read, so memory does not grow with the table.
+ * Each export runs on its own connection outside the pool – it may take minutes –
+ * and at most maxConcurrent run at once.
+ */
+final class Export {
+
+    static final String VOTERS = "exportVoters", CANDIDATES = "exportCandidates";
+
+    /** where the chunks go; may block while the client catches up */
+    interface Out {
+        void write(byte[] chunk) throws IOException;
+    }
+
+    private final DbPool    pool;
+    private final int       chunkRows;
+    private final Semaphore running;
+
+    Export(DbPool pool, int chunkRows, int maxConcurrent) {
+        this.pool      = pool;
+        this.chunkRows = chunkRows;
+        this.running   = new Semaphore(maxConcurrent);
+    }
+
+    static boolean isExport(String req) {
+        String cmd = req.split(";", 2)[0].trim();
+        return cmd.equals(VOTERS) || cmd.equals(CANDIDATES);
+    }
+
+    /** streams the export asked for by the request line req; returns the closing END/ERROR line */
+    String run(String req, Out out) throws IOException {
+        String[] p    = req.split(";", 2);
+        String   cmd  = p[0].trim();
+        String   seat = p.length > 1 ? p[1].trim().toUpperCase() : "";
+        if (!seat.isEmpty() && !seat.matches("^(NA|PP)-\\d+$")) return last(out, "ERROR:bad seat format");
+
+        String sql;
+        if (cmd.equals(VOTERS))
+            sql = "SELECT CNIC,Name,PhoneNo,City,Status,NAConstituency,ProvincialConstituency FROM Users WHERE Status <> 'Admin'"
+                + (seat.isEmpty() ? "" : seat.startsWith("NA") ? " AND NAConstituency=?" : " AND ProvincialConstituency=?")
+                + " ORDER BY Name,CNIC";
+        else
+            sql = "SELECT CNIC,CandidateName,ConstitutionType,ConstitutionSeat,PartyName,Symbol FROM Candidates"
+                + (seat.isEmpty() ? "" : " WHERE ConstitutionSeat=?")
+                + " ORDER BY ConstitutionSeat,CNIC";
+
+        try {
+            if (!running.tryAcquire(5, TimeUnit.SECONDS)) return last(out, "ERROR:BUSY – too many exports running");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return "ERROR:interrupted";
+        }
+        long rows = 0;
+        try (Connection c = pool.dedicated()) {
+            try (Statement st = c.createStatement()) {
+                st.execute("SET SESSION net_write_timeout = 600");      // a slow client must not abort the stream
+            }
+            try (PreparedStatement ps = c.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+                ps.setFetchSize(Integer.MIN_VALUE);                      // Connector/J: stream rows instead of buffering
+                if (!seat.isEmpty()) ps.setString(1, seat);
+                try (ResultSet rs = ps.executeQuery()) {
+                    int n = rs.getMetaData().getColumnCount();
+                    StringBuilder chunk = new StringBuilder(chunkRows * 64).append("CHUNK");
+                    int inChunk = 0;
+                    while (rs.next()) {
+                        chunk.append(';');
+                        for (int i = 1; i <= n; i++) {
+                            if (i > 1) chunk.append(',');
+                            chunk.append(rs.getString(i));
+                        }
+                        rows++;
+                        if (++inChunk == chunkRows) {
+                            out.write(line(chunk.toString()));
+                            chunk.setLength(5);
+                            inChunk = 0;
+                        }
+                    }
+                    if (inChunk > 0) out.write(line(chunk.toString()));
+                }
+            }
+            return last(out, "END;" + rows);
+        } catch (SQLException e) {
+            return last(out, "ERROR:" + e.getMessage());
+        } finally {
+            running.release();
+        }
+    }
+
+    private static String last(Out out, String s) throws IOException {
+        out.write(line(s));
+        return s;
+    }
+
+    private static byte[] line(String s) {
+        return (s + "\n").getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,159 @@
+package server;
+
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Final results of an election, computed once when it finishes and stored in
+ * Election_Results (totals, position and margin per seat and candidate).
+ * getSeatResults / getPartyResults read that table instead of aggregating Votes.
+ *
+ * Seats are counted in parallel, each on its own pooled connection; the rows are
+ * then written in one transaction, replacing any earlier attempt for that election,
+ * and onWritten runs (the result cache starts a new version).
+ *
+ * Nothing is counted while a ballot of that election is still on its way: one
+ * that saw the election Started (between casting() and cast()), one waiting in
+ * the group commit, or one in the vote log that has not reached MySQL yet.
+ */
+final class FinalResults {
+
+    record Row(String seat, String cnic, String name, String party, int votes, int position, int margin) { }
+
+    private final DbPool       pool;
+    private final VoteIngest   votes;
+    private final VoteLog      wal;                 // null without -Dems.wal.dir
+    private final int          parallelism;
+    private final Runnable     onWritten;
+    private final Set<Integer> queued = ConcurrentHashMap.newKeySet();
+    private final Map<Integer, AtomicInteger> casting = new ConcurrentHashMap<>();
+    private final ExecutorService runner = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "ems-results");
+        t.setDaemon(true);
+        return t;
+    });
+
+    FinalResults(DbPool pool, VoteIngest votes, VoteLog wal, int parallelism, Runnable onWritten) {
+        this.pool        = pool;
+        this.votes       = votes;
+        this.wal         = wal;
+        this.parallelism = parallelism;
+        this.onWritten   = onWritten;
+    }
+
+    /** the election has just moved to Finished – compute its results in the background */
+    void finished(int election) {
+        if (!queued.add(election)) return;
+        runner.execute(() -> {
+            try { materialize(election); }
+            catch (Exception e) { System.out.println("⚠️ results of election " + election + ": " + e.getMessage()); }
+            finally { queued.remove(election); }
+        });
+    }
+
+    /** a ballot for this election is being checked – call before looking at its status again */
+    void casting(int election) {
+        casting.computeIfAbsent(election, k -> new AtomicInteger()).incrementAndGet();
+    }
+
+    /** … and has been refused or handed to the group commit / vote log */
+    void cast(int election) {
+        casting.get(election).decrementAndGet();
+    }
+
+    /** start‑up: finished elections that never got their results (e.g. finished while we were down) */
+    void catchUp(Set<Integer> finished) throws SQLException {
+        Set<Integer> done = new HashSet<>();
+        try (Connection c = pool.borrow(); Statement st = c.createStatement();
+             ResultSet rs = st.executeQuery("SELECT DISTINCT ElectionID FROM Election_Results")) {
+            while (rs.next()) done.add(rs.getInt(1));
+        }
+        for (int e : finished) if (!done.contains(e)) finished(e);
+    }
+
+    /* ========================================================= */
+
+    private void materialize(int election) throws Exception {
+        while (inFlight(election)) Thread.sleep(200);       // every accepted vote must be in MySQL first
+
+        long t0 = System.currentTimeMillis();
+        List<String> seats = new ArrayList<>();
+        try (Connection c = pool.borrow();
+             PreparedStatement ps = c.prepareStatement("SELECT DISTINCT Seat FROM Votes WHERE ElectionID=?")) {
+            ps.setInt(1, election);
+            ResultSet rs = ps.executeQuery();
+            while (rs.next()) seats.add(rs.getString(1));
+        }
+
+        List<Row> rows = new ArrayList<>();
+        try (ExecutorService ex = Executors.newFixedThreadPool(Math.max(1, Math.min(parallelism, seats.size())))) {
+            List<Future<List<Row>>> parts = new ArrayList<>(seats.size());
+            for (String seat : seats) parts.add(ex.submit(() -> seat(election, seat)));
+            for (Future<List<Row>> f : parts) rows.addAll(f.get());
+        }
+
+        try (Connection c = pool.borrow()) {
+            c.setAutoCommit(false);
+            try (PreparedStatement del = c.prepareStatement("DELETE FROM Election_Results WHERE ElectionID=?");
+                 PreparedStatement ins = c.prepareStatement("""
+                     INSERT INTO Election_Results
+                            (ElectionID,Seat,CandidateCNIC,CandidateName,PartyName,PartyID,Votes,Position,Margin)
+                     VALUES (?,?,?,?,?,(SELECT ID FROM Party WHERE PartyKey=LOWER(TRIM(?))),?,?,?)
+                     """)) {
+                del.setInt(1, election);
+                del.executeUpdate();
+                for (Row r : rows) {
+                    ins.setInt(1, election);      ins.setString(2, r.seat());
+                    ins.setString(3, r.cnic());   ins.setString(4, r.name());
+                    ins.setString(5, r.party());  ins.setString(6, r.party());
+                    ins.setInt(7, r.votes());     ins.setInt(8, r.position());
+                    ins.setInt(9, r.margin());
+                    ins.addBatch();
+                }
+                ins.executeBatch();
+                c.commit();
+            }
+        }
+        onWritten.run();
+        System.out.println("🏁 results of election " + election + ": " + seats.size() + " seats, "
+                           + rows.size() + " rows in " + (System.currentTimeMillis() - t0) + " ms");
+    }
+
+    private boolean inFlight(int election) {
+        AtomicInteger n = casting.get(election);
+        return n != null && n.get() > 0 || votes.pending(election) || wal != null && wal.pending(election);
+    }
+
+    /** one seat, most votes first; margin = lead over the next candidate */
+    private List<Row> seat(int election, String seat) throws SQLException {
+        String sql = """
+            SELECT v.CandidateCNIC, c.CandidateName, c.PartyName, COUNT(*) AS Votes
+              FROM Votes v
+              JOIN Candidates c ON c.CNIC = v.CandidateCNIC AND c.ConstitutionSeat = v.Seat
+             WHERE v.ElectionID=? AND v.Seat=?
+             GROUP BY v.CandidateCNIC, c.CandidateName, c.PartyName
+             ORDER BY Votes DESC, v.CandidateCNIC
+            """;
+        List<String[]> who   = new ArrayList<>();
+        List<Integer>  votes = new ArrayList<>();
+        try (Connection c = pool.borrow(); PreparedStatement ps = c.prepareStatement(sql)) {
+            ps.setInt(1, election);
+            ps.setString(2, seat);
+            ResultSet rs = ps.executeQuery();
+            while (rs.next()) {
+                who.add(new String[]{ rs.getString(1), rs.getString(2), rs.getString(3) });
+                votes.add(rs.getInt(4));
+            }
+        }
+
+        List<Row> out = new ArrayList<>(who.size());
+        for (int i = 0; i < who.size(); i++) {
+            int next = i + 1 < votes.size() ? votes.get(i + 1) : 0;
+            String[] w = who.get(i);
+            out.add(new Row(seat, w[0], w[1], w[2], votes.get(i), i + 1, votes.get(i) - next));
+        }
+        return out;
+    }
+}
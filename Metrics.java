@@ -0,0 +1,165 @@
+package server;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.*;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Consumer;
+
+/**
+ * Prometheus text‑format endpoint (GET /metrics) on the JDK's built‑in HttpServer.
+ *
+ * The server only asks the collector for the current figures at scrape time –
+ * nothing is sampled or stored in between, except the short vote Rate window.
+ * JVM heap, GC and thread figures are added here; everything EMS specific comes
+ * from the collector.  Scrapes are served by one daemon thread of their own,
+ * never by the request workers.
+ */
+final class Metrics {
+
+    private final HttpServer http;
+
+    Metrics(String bind, int port, Consumer<Out> collect) throws IOException {
+        http = HttpServer.create(new InetSocketAddress(bind, port), 8);
+        http.setExecutor(Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "ems-metrics");
+            t.setDaemon(true);
+            return t;
+        }));
+        http.createContext("/metrics", ex -> serve(ex, collect));
+        http.start();
+    }
+
+    int port() { return http.getAddress().getPort(); }
+
+    private static void serve(HttpExchange ex, Consumer<Out> collect) throws IOException {
+        try (ex) {
+            if (!ex.getRequestMethod().equals("GET") && !ex.getRequestMethod().equals("HEAD")) {
+                ex.sendResponseHeaders(405, -1);
+                return;
+            }
+            Out out = new Out();
+            try {
+                collect.accept(out);
+                jvm(out);
+            } catch (RuntimeException e) {
+                System.out.println("⚠️ metrics: " + e);
+            }
+            byte[] body = out.sb.toString().getBytes(StandardCharsets.UTF_8);
+            ex.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            if (ex.getRequestMethod().equals("HEAD")) { ex.sendResponseHeaders(200, -1); return; }
+            ex.sendResponseHeaders(200, body.length);
+            try (OutputStream os = ex.getResponseBody()) { os.write(body); }
+        }
+    }
+
+    private static void jvm(Out o) {
+        MemoryMXBean mem  = ManagementFactory.getMemoryMXBean();
+        MemoryUsage  heap = mem.getHeapMemoryUsage(), non = mem.getNonHeapMemoryUsage();
+        o.gauge("jvm_memory_used_bytes",      "JVM memory in use", "area=\"heap\"",    heap.getUsed());
+        o.gauge("jvm_memory_used_bytes",      "JVM memory in use", "area=\"nonheap\"", non.getUsed());
+        o.gauge("jvm_memory_committed_bytes", "JVM memory committed", "area=\"heap\"",    heap.getCommitted());
+        o.gauge("jvm_memory_committed_bytes", "JVM memory committed", "area=\"nonheap\"", non.getCommitted());
+        o.gauge("jvm_memory_max_bytes",       "JVM heap limit (-1 = none)", "area=\"heap\"", heap.getMax());
+        List<GarbageCollectorMXBean> gcs = ManagementFactory.getGarbageCollectorMXBeans();
+        for (GarbageCollectorMXBean gc : gcs)
+            o.counter("jvm_gc_collections_total", "GC runs per collector",
+                      "gc=\"" + esc(gc.getName()) + "\"", Math.max(0, gc.getCollectionCount()));
+        for (GarbageCollectorMXBean gc : gcs)
+            o.counter("jvm_gc_collection_seconds_total", "GC time per collector",
+                      "gc=\"" + esc(gc.getName()) + "\"", Math.max(0, gc.getCollectionTime()) / 1e3);
+        ThreadMXBean th = ManagementFactory.getThreadMXBean();
+        o.gauge("jvm_threads_live", "live platform threads", null, th.getThreadCount());
+        o.gauge("process_uptime_seconds", "time since the JVM started", null,
+                ManagementFactory.getRuntimeMXBean().getUptime() / 1e3);
+    }
+
+    /**
+     * Connections waiting in the kernel accept queue of a listening port –
+     * Linux only (/proc/net/tcp*), -1 elsewhere.
+     */
+    static long acceptQueue(int port) {
+        long n = -1;
+        for (String f : new String[]{ "/proc/net/tcp", "/proc/net/tcp6" }) {
+            Path p = Path.of(f);
+            if (!Files.isReadable(p)) continue;
+            try {
+                for (String line : Files.readAllLines(p)) {
+                    String[] c = line.trim().split("\\s+");
+                    if (c.length < 5 || !c[3].equals("0A")) continue;                       // 0A = LISTEN
+                    int colon = c[1].lastIndexOf(':');
+                    if (colon < 0 || Integer.parseInt(c[1].substring(colon + 1), 16) != port) continue;
+                    n = Math.max(n, 0) + Long.parseLong(c[4].substring(c[4].indexOf(':') + 1), 16);   // rx = queued
+                }
+            } catch (IOException | RuntimeException ignored) { }
+        }
+        return n;
+    }
+
+    /* ========================================================= */
+
+    /** the exposition being written; HELP/TYPE go out once per metric name */
+    static final class Out {
+        private final StringBuilder sb   = new StringBuilder(16 * 1024);
+        private final Set<String>   seen = new HashSet<>();
+
+        Out gauge(String name, String help, String labels, double v)   { return sample(name, "gauge", help, labels, v); }
+        Out counter(String name, String help, String labels, double v) { return sample(name, "counter", help, labels, v); }
+
+        /** samples of one name must be written together; labels = preformatted k="v",… or null */
+        Out sample(String name, String type, String help, String labels, double v) {
+            if (seen.add(name))
+                sb.append("# HELP ").append(name).append(' ').append(help).append('\n')
+                  .append("# TYPE ").append(name).append(' ').append(type).append('\n');
+            sb.append(name);
+            if (labels != null) sb.append('{').append(labels).append('}');
+            sb.append(' ');
+            if (v == Math.rint(v) && Math.abs(v) < 1e15) sb.append((long) v); else sb.append(v);
+            sb.append('\n');
+            return this;
+        }
+    }
+
+    static String esc(String s) {
+        return s.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    /** events per second over the last window seconds, in one‑second buckets */
+    static final class Rate {
+        private final AtomicLongArray counts, stamps;
+
+        Rate(int window) {
+            counts = new AtomicLongArray(window);
+            stamps = new AtomicLongArray(window);
+        }
+
+        void add(long n) {
+            long s = System.currentTimeMillis() / 1000;
+            int  i = (int) (s % counts.length());
+            long old = stamps.get(i);
+            if (old != s && stamps.compareAndSet(i, old, s)) counts.set(i, 0);   // bucket from an older round
+            counts.addAndGet(i, n);
+        }
+
+        /** average over the complete seconds of the window */
+        double perSecond() {
+            long now = System.currentTimeMillis() / 1000, sum = 0;
+            int  w   = counts.length();
+            for (int i = 0; i < w; i++) {
+                long s = stamps.get(i);
+                if (s < now && s >= now - (w - 1)) sum += counts.get(i);
+            }
+            return (double) sum / (w - 1);
+        }
+    }
+}
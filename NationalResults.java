@@ -0,0 +1,149 @@
+package server;
+
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * The national picture of one election and assembly (NA or PP) in one pass:
+ * winner, runner‑up, margin and turnout of every seat, and seats won per party.
+ *
+ * Counts come from Tallies, so a running election works as well as a finished one;
+ * registered voters per seat from Turnout.
+ * The seats are split into partitions and counted as a fork/join job; partial
+ * party totals are merged on the way up.  A result is kept for refreshMs so that
+ * paging through it does not recount – pages of one call see the same numbers.
+ */
+final class NationalResults {
+
+    private static final int LEAF = 64;                     // seats per fork/join leaf
+
+    record Seat(String seat, String winner, String winnerName, String winnerParty, long winnerVotes,
+                String runnerUp, String runnerUpName, String runnerUpParty, long runnerUpVotes,
+                long margin, long voted, long registered) { }
+
+    record Party(String party, int seats, long votes) { }
+
+    /** seats in seat order, parties by seats won then votes */
+    record Summary(int election, String assembly, List<Seat> seats, List<Party> parties, long at) { }
+
+    private final Turnout        turnout;
+    private final Tallies        tallies;
+    private final CandidateIndex candidates;
+    private final long           refreshMs;
+    private final Map<String, Summary> memo = new ConcurrentHashMap<>();
+
+    NationalResults(Turnout turnout, Tallies tallies, CandidateIndex candidates, long refreshMs) {
+        this.turnout    = turnout;
+        this.tallies    = tallies;
+        this.candidates = candidates;
+        this.refreshMs  = refreshMs;
+    }
+
+    /** assembly = NA | PP */
+    Summary get(int election, String assembly) throws SQLException {
+        String  key = election + "|" + assembly;
+        long    now = System.currentTimeMillis();
+        Summary s   = memo.get(key);
+        if (s != null && now - s.at() < refreshMs) return s;
+        memo.values().removeIf(m -> now - m.at() >= refreshMs);   // old elections are not asked for again
+        s = compute(election, assembly);
+        memo.put(key, s);
+        return s;
+    }
+
+    /* ========================================================= */
+
+    private Summary compute(int election, String assembly) throws SQLException {
+        Map<String, Map<String, Long>> counts = tallies.election(election);
+        Map<String, Long>              reg    = turnout.registeredBySeat();
+
+        SortedSet<String> seats = new TreeSet<>();
+        String prefix = assembly + "-";
+        for (String s : candidates.seats()) if (s.startsWith(prefix)) seats.add(s);
+        for (String s : counts.keySet())    if (s.startsWith(prefix)) seats.add(s);
+
+        Partial p;
+        try {
+            p = ForkJoinPool.commonPool().invoke(new Count(seats.toArray(String[]::new), 0, seats.size(), counts, reg));
+        } catch (RuntimeException e) {
+            if (e.getCause() instanceof SQLException sql) throw sql;
+            throw e;
+        }
+
+        List<Party> parties = new ArrayList<>(p.parties.size());
+        p.parties.forEach((name, sv) -> parties.add(new Party(name, (int) sv[0], sv[1])));
+        parties.sort(Comparator.comparingInt(Party::seats).reversed()
+                               .thenComparing(Comparator.comparingLong(Party::votes).reversed())
+                               .thenComparing(Party::party));
+        return new Summary(election, assembly, p.seats, parties, System.currentTimeMillis());
+    }
+
+    /** seats done by one subtree; party → {seats won, votes} */
+    private static final class Partial {
+        final List<Seat>         seats   = new ArrayList<>();
+        final Map<String, long[]> parties = new HashMap<>();
+
+        Partial merge(Partial o) {
+            seats.addAll(o.seats);
+            o.parties.forEach((k, v) -> parties.merge(k, v, (a, b) -> new long[]{ a[0] + b[0], a[1] + b[1] }));
+            return this;
+        }
+    }
+
+    @SuppressWarnings("serial")                              // never serialized
+    private final class Count extends RecursiveTask<Partial> {
+        private final String[] seats;
+        private final int      from, to;
+        private final Map<String, Map<String, Long>> counts;
+        private final Map<String, Long>              reg;
+
+        Count(String[] seats, int from, int to, Map<String, Map<String, Long>> counts, Map<String, Long> reg) {
+            this.seats = seats;  this.from = from;  this.to = to;
+            this.counts = counts;  this.reg = reg;
+        }
+
+        @Override protected Partial compute() {
+            if (to - from > LEAF) {
+                int mid = (from + to) >>> 1;
+                Count left = new Count(seats, from, mid, counts, reg);
+                left.fork();
+                Partial right = new Count(seats, mid, to, counts, reg).compute();
+                return left.join().merge(right);               // left half first keeps seat order
+            }
+            Partial out = new Partial();
+            try {
+                for (int i = from; i < to; i++) seat(seats[i], out);
+            } catch (SQLException e) { throw new RuntimeException(e); }
+            return out;
+        }
+
+        private void seat(String seat, Partial out) throws SQLException {
+            List<Map.Entry<String, Long>> c = new ArrayList<>(counts.getOrDefault(seat, Map.of()).entrySet());
+            c.sort(Map.Entry.<String, Long>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()));
+
+            long voted = 0;
+            for (Map.Entry<String, Long> e : c) {
+                voted += e.getValue();
+                String party = party(e.getKey());
+                if (party != null) out.parties.computeIfAbsent(party, k -> new long[2])[1] += e.getValue();
+            }
+
+            Map.Entry<String, Long> w = c.size() > 0 ? c.get(0) : null, r = c.size() > 1 ? c.get(1) : null;
+            CandidateIndex.Info wi = w == null ? null : candidates.info(w.getKey());
+            CandidateIndex.Info ri = r == null ? null : candidates.info(r.getKey());
+            long wv = w == null ? 0 : w.getValue(), rv = r == null ? 0 : r.getValue();
+            if (wi != null && wv > rv) out.parties.computeIfAbsent(wi.party(), k -> new long[2])[0]++;   // a tie wins no seat
+
+            out.seats.add(new Seat(seat,
+                    w == null ? null : w.getKey(), wi == null ? null : wi.name(), wi == null ? null : wi.party(), wv,
+                    r == null ? null : r.getKey(), ri == null ? null : ri.name(), ri == null ? null : ri.party(), rv,
+                    wv - rv, voted, reg.getOrDefault(seat, 0L)));
+        }
+
+        private String party(String cnic) throws SQLException {
+            CandidateIndex.Info i = candidates.info(cnic);
+            return i == null ? null : i.party();
+        }
+    }
+}
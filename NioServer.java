@@ -0,0 +1,418 @@
+package server;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
+import java.nio.charset.Charset;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Non‑blocking server engine (-Dems.engine=nio).
+ *  • a few selector loops own every socket: accept hand‑off, line framing, writes
+ *  • commands run on the worker executor through VoterServer.process(),
+ *    the same dispatch the blocking engine uses
+ *  • requests pipelined on one connection are answered strictly in order
+ *  • after "hello;bin/1" the connection switches to length‑prefixed Wire frames
+ *  • after a granted "subscribe;…" it only carries pushed events (PushHub)
+ *  • exports stream from a worker, at most STREAM_WINDOW chunks ahead of the socket
+ */
+final class NioServer {
+
+    private static final int     READ_BUF    = 16 * 1024;
+    private static final int     MAX_LINE    = VoterServer.MAX_LINE;
+    private static final int     MAX_PENDING = 64;          // queued requests before we stop reading
+    private static final int     STREAM_WINDOW = 8;         // export chunks queued before the worker waits
+    private static final Charset CS          = Charset.defaultCharset();
+
+    private final int             port, backlog, maxConns, idleMs;
+    private final long            keepAliveMs;
+    private final ExecutorService workers;
+    private final Loop[]          loops;
+    private final AtomicInteger   conns = new AtomicInteger();
+
+    private static final Object HELLO = new Object();      // pending marker for the protocol switch
+
+    NioServer(int port, int backlog, int loopCount, ExecutorService workers,
+              int maxConns, int idleMs, long keepAliveMs) throws IOException {
+        this.port     = port;
+        this.backlog  = backlog;
+        this.workers  = workers;
+        this.maxConns = maxConns;
+        this.idleMs   = idleMs;
+        this.keepAliveMs = keepAliveMs;
+
+        loops = new Loop[loopCount];
+        for (int i = 0; i < loopCount; i++) {
+            loops[i] = new Loop();
+            Thread t = new Thread(loops[i], "ems-nio-" + i);
+            t.setDaemon(true);
+            t.start();
+        }
+    }
+
+    /** accept loop – runs on the calling thread */
+    void run() throws IOException {
+        try (ServerSocketChannel ss = ServerSocketChannel.open()) {
+            ss.bind(new InetSocketAddress(port), backlog);
+            int next = 0;
+            while (true) {
+                SocketChannel ch;
+                try { ch = ss.accept(); }
+                catch (IOException e) { e.printStackTrace(); continue; }
+
+                VoterServer.ACCEPTED.increment();
+                if (conns.incrementAndGet() > maxConns) {
+                    conns.decrementAndGet();
+                    rejectBusy(ch);
+                    continue;
+                }
+                loops[next].adopt(ch);
+                next = (next + 1) % loops.length;
+            }
+        }
+    }
+
+    int connections() { return conns.get(); }
+
+    private static void rejectBusy(SocketChannel ch) {
+        VoterServer.REJECTED.increment();
+        try (ch) {
+            ch.write(ByteBuffer.wrap("BUSY\n".getBytes(CS)));
+        } catch (IOException ignored) { }
+    }
+
+    /* ========================================================= */
+    /*  one selector thread                                      */
+    /* ========================================================= */
+
+    private final class Loop implements Runnable {
+        private final Selector         sel   = Selector.open();
+        private final Queue<Runnable>  tasks = new ConcurrentLinkedQueue<>();
+        private final ByteBuffer       rbuf  = ByteBuffer.allocateDirect(READ_BUF);
+
+        Loop() throws IOException { }
+
+        void adopt(SocketChannel ch) {
+            submit(() -> {
+                try {
+                    ch.configureBlocking(false);
+                    ch.socket().setTcpNoDelay(true);
+                    Conn c = new Conn(ch, this);
+                    c.key = ch.register(sel, SelectionKey.OP_READ, c);
+                } catch (IOException e) {
+                    conns.decrementAndGet();
+                    try { ch.close(); } catch (IOException ignored) { }
+                }
+            });
+        }
+
+        /** run r on this loop's thread */
+        void submit(Runnable r) {
+            tasks.add(r);
+            sel.wakeup();
+        }
+
+        @Override public void run() {
+            long nextSweep = System.currentTimeMillis() + 1_000;
+            while (true) {
+                try {
+                    sel.select(1_000);
+                    for (Runnable r; (r = tasks.poll()) != null; ) r.run();
+
+                    Iterator<SelectionKey> it = sel.selectedKeys().iterator();
+                    while (it.hasNext()) {
+                        SelectionKey k = it.next();
+                        it.remove();
+                        Conn c = (Conn) k.attachment();
+                        try {
+                            if (k.isValid() && k.isReadable()) c.onRead();
+                            if (k.isValid() && k.isWritable()) c.onWrite();
+                        } catch (IOException | CancelledKeyException e) {
+                            c.close();
+                        }
+                    }
+
+                    long now = System.currentTimeMillis();
+                    if (now >= nextSweep) {
+                        nextSweep = now + 1_000;
+                        for (SelectionKey k : sel.keys()) {
+                            Conn c = (Conn) k.attachment();
+                            if (c != null && c.isIdle(now)) c.close();
+                        }
+                    }
+                } catch (Exception e) { e.printStackTrace(); }
+            }
+        }
+    }
+
+    /* ========================================================= */
+    /*  per‑connection state – touched only by its loop thread   */
+    /* ========================================================= */
+
+    private final class Conn {
+        final SocketChannel ch;
+        final Loop          loop;
+        final String        cli;
+        SelectionKey        key;
+
+        /* partial line or frame being read; frameLen = -1 while reading a frame header */
+        private byte[]  line = new byte[256];
+        private int     len, frameLen = -1;
+        private boolean binary;
+
+        /* queued requests: String line, byte[] frame body, or HELLO */
+        private final ArrayDeque<Object>     pending = new ArrayDeque<>();
+        private final ArrayDeque<ByteBuffer> out     = new ArrayDeque<>();
+        private boolean busy, eof;
+        private volatile boolean closed;                  // also read by an exporting worker
+        private long    lastActive = System.currentTimeMillis();
+        private long    lastWork   = lastActive;          // last request that was not a heartbeat ping
+        private PushHub.Sink sink;                        // set once subscribed
+
+        /* export chunks not yet written; their permits come back as the socket drains */
+        private final Semaphore       window   = new Semaphore(STREAM_WINDOW);
+        private final Set<ByteBuffer> streamed = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        Conn(SocketChannel ch, Loop loop) throws IOException {
+            this.ch   = ch;
+            this.loop = loop;
+            this.cli  = ((InetSocketAddress) ch.getRemoteAddress()).getAddress().getHostAddress();
+        }
+
+        boolean isIdle(long now) {
+            return sink == null && !busy && pending.isEmpty() && out.isEmpty()
+                   && (now - lastActive > idleMs || now - lastWork > keepAliveMs);
+        }
+
+        void onRead() throws IOException {
+            ByteBuffer b = loop.rbuf;
+            b.clear();
+            int n = ch.read(b);
+            if (n < 0 && sink != null) { close(); return; }   // subscriber went away
+            if (n < 0) {                                   // client finished sending
+                eof = true;
+                key.interestOps(key.interestOps() & ~SelectionKey.OP_READ);
+                closeIfDone();
+                return;
+            }
+            lastActive = System.currentTimeMillis();
+            if (sink != null) return;                      // a subscriber has nothing more to say
+
+            b.flip();
+            if (binary) readFrames(b);
+            else while (b.hasRemaining()) {
+                byte x = b.get();
+                if (x == '\n') {
+                    if (emitLine()) { readFrames(b); break; }   // rest of the buffer is already binary
+                    continue;
+                }
+                if (len == MAX_LINE) {
+                    key.interestOps(key.interestOps() & ~SelectionKey.OP_READ);
+                    eof = true;
+                    pending.clear();
+                    send(text("ERROR: request too long"));
+                    return;
+                }
+                if (len == line.length) line = Arrays.copyOf(line, Math.min(MAX_LINE, len * 2));
+                line[len++] = x;
+            }
+            if (closed) return;
+            if (pending.size() >= MAX_PENDING)
+                key.interestOps(key.interestOps() & ~SelectionKey.OP_READ);
+            dispatchNext();
+        }
+
+        /** queues the finished line; true if it was the binary hello */
+        private boolean emitLine() {
+            int l = len > 0 && line[len - 1] == '\r' ? len - 1 : len;
+            String req = new String(line, 0, l, CS);
+            len = 0;
+            if (VoterServer.isBinaryHello(req)) {
+                pending.add(HELLO);
+                binary = true;
+                return true;
+            }
+            if (!VoterServer.isPing(req)) lastWork = System.currentTimeMillis();
+            pending.add(req);
+            return false;
+        }
+
+        private void readFrames(ByteBuffer b) {
+            while (b.hasRemaining()) {
+                int want = frameLen < 0 ? 4 : frameLen;
+                int take = Math.min(want - len, b.remaining());
+                if (line.length < want) line = Arrays.copyOf(line, want);
+                b.get(line, len, take);
+                len += take;
+                if (len < want) return;
+
+                len = 0;
+                if (frameLen < 0) {
+                    frameLen = (line[0] & 0xff) << 24 | (line[1] & 0xff) << 16 | (line[2] & 0xff) << 8 | (line[3] & 0xff);
+                    if (frameLen < 8 || frameLen > Wire.MAX_FRAME) { close(); return; }
+                } else {
+                    byte[] frame = Arrays.copyOf(line, frameLen);
+                    if (!VoterServer.isPing(frame)) lastWork = System.currentTimeMillis();
+                    pending.add(frame);
+                    frameLen = -1;
+                }
+            }
+        }
+
+        private void dispatchNext() {
+            if (busy || closed) return;
+            Object req = pending.poll();
+            if (req == null) return;
+            if (!eof && pending.size() < MAX_PENDING)
+                key.interestOps(key.interestOps() | SelectionKey.OP_READ);
+
+            if (req == HELLO) {                            // no DB work – answer inline
+                send(text(Wire.ACK));
+                dispatchNext();
+                return;
+            }
+
+            busy = true;
+            if (req instanceof String s && Export.isExport(s)) {
+                try {
+                    workers.execute(() -> {
+                        long   t0   = System.nanoTime();
+                        long[] sent = { 0 };
+                        String end;
+                        try { end = VoterServer.EXPORT.run(s, chunk -> { stream(chunk); sent[0] += chunk.length; }); }
+                        catch (IOException e) { end = "ERROR:" + e.getMessage(); }   // connection went away
+                        VoterServer.logStream(cli, s, t0, sent[0], end);
+                        loop.submit(() -> complete(null));
+                    });
+                } catch (RejectedExecutionException e) {
+                    busy = false;
+                    pending.clear();
+                    eof = true;
+                    send(text("BUSY"));
+                }
+                return;
+            }
+            if (req instanceof String s && VoterServer.isSubscribe(s)) {
+                try {
+                    workers.execute(() -> {                    // checking admin credentials needs MySQL
+                        long t0 = System.nanoTime();
+                        PushHub.Grant g = VoterServer.subscribe(s.substring(s.indexOf(';') + 1));
+                        VoterServer.logStream(cli, s, t0, g.reply().length() + 1, g.reply());
+                        loop.submit(() -> subscribed(g));
+                    });
+                } catch (RejectedExecutionException e) {
+                    busy = false;
+                    pending.clear();
+                    eof = true;
+                    send(text("BUSY"));
+                }
+                return;
+            }
+            try {
+                workers.execute(() -> {
+                    ByteBuffer res;
+                    try {
+                        res = req instanceof byte[] frame
+                                ? ByteBuffer.wrap(VoterServer.processFrame(cli, frame))
+                                : text(VoterServer.process(cli, (String) req));
+                    } catch (Throwable t) { res = text("ERROR:" + t.getMessage()); }
+                    ByteBuffer reply = res;
+                    loop.submit(() -> complete(reply));
+                });
+            } catch (RejectedExecutionException e) {
+                busy = false;
+                pending.clear();
+                eof = true;                                // same as blocking engine: BUSY then close
+                send(text("BUSY"));
+            }
+        }
+
+        private void complete(ByteBuffer res) {
+            busy = false;
+            if (closed) return;
+            if (res != null) send(res);
+            else closeIfDone();
+            dispatchNext();
+        }
+
+        /** worker side of an export: waits while STREAM_WINDOW chunks are still unsent */
+        private void stream(byte[] chunk) throws IOException {
+            try {
+                while (!window.tryAcquire(1, TimeUnit.SECONDS))
+                    if (closed) throw new IOException("connection closed");
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("interrupted");
+            }
+            ByteBuffer b = ByteBuffer.wrap(chunk);
+            loop.submit(() -> {
+                if (closed) { window.release(); return; }
+                streamed.add(b);
+                send(b);
+            });
+        }
+
+        /** subscribe reply sent; from here on only events go out */
+        private void subscribed(PushHub.Grant g) {
+            busy = false;
+            if (closed) return;
+            send(text(g.reply()));
+            if (g.topics().isEmpty()) { dispatchNext(); return; }
+
+            pending.clear();
+            sink = new PushHub.Sink() {
+                @Override public boolean offer(byte[] line) {
+                    loop.submit(() -> push(line));
+                    return true;
+                }
+                @Override public void drop() { loop.submit(Conn.this::close); }
+            };
+            VoterServer.PUSH.subscribe(g.topics(), sink);
+        }
+
+        private void push(byte[] line) {
+            if (closed) return;
+            if (out.size() >= VoterServer.PUSH_QUEUE) { close(); return; }   // too slow – let it reconnect
+            send(ByteBuffer.wrap(line));
+        }
+
+        private void send(ByteBuffer res) {
+            out.add(res);
+            lastActive = System.currentTimeMillis();
+            try { onWrite(); } catch (IOException | CancelledKeyException e) { close(); }
+        }
+
+        void onWrite() throws IOException {
+            while (!out.isEmpty()) {
+                ByteBuffer b = out.peek();
+                ch.write(b);
+                if (b.hasRemaining()) break;               // socket buffer full – wait for OP_WRITE
+                out.poll();
+                if (streamed.remove(b)) window.release();
+            }
+            int ops = key.interestOps();
+            key.interestOps(out.isEmpty() ? ops & ~SelectionKey.OP_WRITE : ops | SelectionKey.OP_WRITE);
+            closeIfDone();
+        }
+
+        private void closeIfDone() {
+            if (eof && !busy && pending.isEmpty() && out.isEmpty()) close();
+        }
+
+        private static ByteBuffer text(String line) {
+            return ByteBuffer.wrap((line + "\n").getBytes(CS));
+        }
+
+        void close() {
+            if (closed) return;
+            closed = true;
+            if (sink != null) VoterServer.PUSH.unsubscribe(sink);
+            if (key != null) key.cancel();
+            try { ch.close(); } catch (IOException ignored) { }
+            conns.decrementAndGet();
+        }
+    }
+}
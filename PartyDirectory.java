@@ -0,0 +1,70 @@
+package server;
+
+import java.sql.*;
+import java.util.*;
+
+/**
+ * Every registered party by its case‑folded key (Party.PartyKey = LOWER(TRIM(PartyName))),
+ * so a name typed in any case resolves to Party.ID without touching MySQL.
+ * Loaded once, replaced wholesale by registerParty – there are a few dozen parties.
+ * key() must fold the way MySQL's LOWER(TRIM()) does for the names we accept.
+ */
+final class PartyDirectory {
+
+    record Party(int id, String name, String symbol, String leader) { }
+
+    private final DbPool pool;
+    private volatile Map<String, Party> byKey;                 // null until loaded
+    private volatile Map<String, Party> bySymbol = Map.of();
+
+    PartyDirectory(DbPool pool) {
+        this.pool = pool;
+        try (Connection c = pool.borrow()) { load(c); }
+        catch (SQLException e) { System.out.println("⚠️ party directory: " + e.getMessage() + " – will retry"); }
+    }
+
+    static String key(String typed) { return typed.trim().toLowerCase(Locale.ROOT); }
+
+    /** party with this name in any case, null if there is none */
+    Party byName(String typed) throws SQLException { return loaded().get(key(typed)); }
+
+    /** true if name or symbol (any case) or leader is already taken */
+    boolean taken(String name, String symbol, String leader) throws SQLException {
+        Map<String, Party> m = loaded();
+        if (m.containsKey(key(name)) || bySymbol.containsKey(key(symbol))) return true;
+        for (Party p : m.values()) if (leader.equals(p.leader())) return true;
+        return false;
+    }
+
+    /** parties whose name contains the fragment (any case), by name */
+    List<Party> search(String fragment) throws SQLException {
+        String f = key(fragment);
+        List<Party> out = new ArrayList<>();
+        for (Map.Entry<String, Party> e : loaded().entrySet()) if (e.getKey().contains(f)) out.add(e.getValue());
+        out.sort(Comparator.comparing(Party::name));
+        return out;
+    }
+
+    synchronized Map<String, Party> load(Connection c) throws SQLException {
+        Map<String, Party> m = new HashMap<>(), s = new HashMap<>();
+        try (Statement st = c.createStatement();
+             ResultSet rs = st.executeQuery("SELECT ID, PartyName, Symbol, LeaderCNIC FROM Party")) {
+            while (rs.next()) {
+                Party p = new Party(rs.getInt(1), rs.getString(2), rs.getString(3), rs.getString(4));
+                m.put(key(p.name()), p);
+                if (p.symbol() != null) s.put(key(p.symbol()), p);
+            }
+        }
+        bySymbol = s;
+        byKey    = m;
+        return m;
+    }
+
+    /* ========================================================= */
+
+    private Map<String, Party> loaded() throws SQLException {
+        Map<String, Party> m = byKey;
+        if (m != null) return m;
+        try (Connection c = pool.borrow()) { return load(c); }
+    }
+}
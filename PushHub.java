@@ -0,0 +1,119 @@
+package server;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.IntSupplier;
+
+/**
+ * Server push for "subscribe" connections (both engines).
+ *
+ * Topics:
+ *  • status – election status / stop time, sent on subscribe and on every change
+ *  • tally  – admins only: the counts that changed in the running election,
+ *             at most once per tallyMs, as seat,candidate,votes rows
+ * Every subscriber also gets "EVENT;ping" every heartbeatMs, so dead booths are found.
+ *
+ * An event is encoded once and the same bytes go to every sink.  Sinks never block
+ * the publisher: the engine queues the bytes on the connection and drops a
+ * subscriber that falls too far behind.
+ */
+final class PushHub {
+
+    static final String STATUS = "status", TALLY = "tally";
+    static final Set<String> TOPICS = Set.of(STATUS, TALLY);
+
+    /** one subscribed connection; offer must not block – false drops the subscriber */
+    interface Sink {
+        boolean offer(byte[] line);
+        void    drop();
+    }
+
+    /** reply line for the subscribe request, and the topics granted (empty on error) */
+    record Grant(String reply, Set<String> topics) { }
+
+    private final Tallies     tallies;
+    private final IntSupplier active;                      // running election, or -1
+    private final Map<String, Set<Sink>> subs = new ConcurrentHashMap<>();
+    private final Map<String, byte[]>    last = new ConcurrentHashMap<>();   // retained event per topic
+
+    /* tally topic: counts already sent, for the running election only */
+    private int                            tallyElection = -1;
+    private Map<String, Map<String, Long>> sent          = Map.of();
+
+    PushHub(Tallies tallies, IntSupplier active, long tallyMs, long heartbeatMs) {
+        this.tallies = tallies;
+        this.active  = active;
+        for (String t : TOPICS) subs.put(t, ConcurrentHashMap.newKeySet());
+
+        ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "ems-push");
+            t.setDaemon(true);
+            return t;
+        });
+        timer.scheduleWithFixedDelay(this::tallyTick, tallyMs, tallyMs, TimeUnit.MILLISECONDS);
+        timer.scheduleWithFixedDelay(this::heartbeat, heartbeatMs, heartbeatMs, TimeUnit.MILLISECONDS);
+    }
+
+    /** registers s and hands it the retained event of each topic */
+    void subscribe(Set<String> topics, Sink s) {
+        for (String t : topics) {
+            subs.get(t).add(s);
+            byte[] e = last.get(t);
+            if (e != null && !s.offer(e)) { unsubscribe(s); s.drop(); return; }
+        }
+    }
+
+    void unsubscribe(Sink s) {
+        for (Set<Sink> set : subs.values()) set.remove(s);
+    }
+
+    /** sends EVENT;topic;payload to every subscriber of topic; retain = also to later subscribers */
+    void publish(String topic, String payload, boolean retain) {
+        byte[] e = ("EVENT;" + topic + ";" + payload + "\n").getBytes(StandardCharsets.UTF_8);
+        if (retain) last.put(topic, e);
+        for (Sink s : subs.get(topic)) deliver(s, e);
+    }
+
+    int subscribers() {
+        Set<Sink> all = new HashSet<>();
+        for (Set<Sink> set : subs.values()) all.addAll(set);
+        return all.size();
+    }
+
+    /* ========================================================= */
+
+    private void deliver(Sink s, byte[] e) {
+        if (s.offer(e)) return;
+        unsubscribe(s);
+        s.drop();
+    }
+
+    private void tallyTick() {
+        try {
+            int e = active.getAsInt();
+            if (e != tallyElection) { tallyElection = e; sent = Map.of(); }
+            if (e < 0 || subs.get(TALLY).isEmpty()) return;
+
+            Map<String, Map<String, Long>> now = tallies.election(e);
+            StringJoiner rows = new StringJoiner(";");
+            now.forEach((seat, cands) -> {
+                Map<String, Long> before = sent.getOrDefault(seat, Map.of());
+                cands.forEach((cand, n) -> {
+                    if (!n.equals(before.get(cand))) rows.add(seat + "," + cand + "," + n);
+                });
+            });
+            sent = now;
+            if (rows.length() > 0) publish(TALLY, e + ";" + rows, false);
+        } catch (Exception ex) {
+            System.out.println("⚠️ push tally: " + ex.getMessage());
+        }
+    }
+
+    private void heartbeat() {
+        byte[] ping = "EVENT;ping\n".getBytes(StandardCharsets.UTF_8);
+        Set<Sink> all = new HashSet<>();
+        for (Set<Sink> set : subs.values()) all.addAll(set);
+        for (Sink s : all) deliver(s, ping);
+    }
+}
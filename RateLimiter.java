@@ -0,0 +1,91 @@
+package server;
+
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token buckets per key (client address, CNIC …): each key may spend burst
+ * requests at once and earns perSec back, up to burst.
+ *
+ * Buckets live in a concurrent map of at most maxKeys.  A bucket that has
+ * refilled completely holds no information, so it is dropped – every minute,
+ * and whenever the map is full.  If the map is still full after that, every key
+ * in it is being throttled right now and a new key is refused as well.
+ *
+ * Several tokens can be taken at once (a batch); a caller that needs tokens from
+ * more than one bucket gives back what it took if a later one refuses.
+ */
+final class RateLimiter<K> {
+
+    private final double perNano, burst;
+    private final int    maxKeys;
+    private final Map<K, Bucket> buckets = new ConcurrentHashMap<>();
+    private final AtomicLong     lastSweep = new AtomicLong();
+
+    private static final ScheduledExecutorService SWEEPER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "ems-limit-sweep");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final class Bucket {
+        private double tokens = burst;
+        private long   last   = System.nanoTime();
+
+        synchronized boolean take(long now, int n) {
+            refill(now);
+            if (tokens < n) return false;
+            tokens -= n;
+            return true;
+        }
+
+        synchronized void give(int n) {
+            tokens = Math.min(burst, tokens + n);
+        }
+
+        synchronized boolean full(long now) {
+            refill(now);
+            return tokens >= burst;
+        }
+
+        private void refill(long now) {
+            tokens = Math.min(burst, tokens + (now - last) * perNano);
+            last   = now;
+        }
+    }
+
+    RateLimiter(double perSec, int burst, int maxKeys) {
+        this.perNano = perSec / 1e9;
+        this.burst   = Math.max(1, burst);
+        this.maxKeys = maxKeys;
+        SWEEPER.scheduleWithFixedDelay(() -> sweep(System.nanoTime()), 60, 60, TimeUnit.SECONDS);
+    }
+
+    /** n tokens or none; true = go ahead, false = over the limit */
+    boolean tryAcquire(K key, int n) {
+        long   now = System.nanoTime();
+        Bucket b   = buckets.get(key);
+        if (b == null) {
+            if (buckets.size() >= maxKeys) {
+                long s = lastSweep.get();
+                if (now - s > 100_000_000L && lastSweep.compareAndSet(s, now)) sweep(now);   // ≤ 10 sweeps/s
+                if (buckets.size() >= maxKeys) return false;
+            }
+            b = buckets.computeIfAbsent(key, k -> new Bucket());
+        }
+        return b.take(now, n);
+    }
+
+    /** undoes tryAcquire(key, n) */
+    void refund(K key, int n) {
+        Bucket b = buckets.get(key);
+        if (b != null) b.give(n);
+    }
+
+    int size() { return buckets.size(); }
+
+    private void sweep(long now) {
+        buckets.values().removeIf(b -> b.full(now));
+    }
+}
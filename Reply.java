@@ -0,0 +1,45 @@
+package server;
+
+import java.util.List;
+
+/**
+ * Answer of one command: either a single status/scalar line
+ * ("OK…", "NO_MATCH", "42", "ERROR:…") or a table of typed rows.
+ * The text protocol renders tables as  f,f,f;f,f,f  exactly as before,
+ * the binary protocol sends the columns as they are.
+ */
+final class Reply {
+
+    final String         line;     // null for tables
+    final List<Object[]> rows;     // null for lines; fields are String, Integer, Long or null
+
+    private Reply(String line, List<Object[]> rows) {
+        this.line = line;
+        this.rows = rows;
+    }
+
+    static Reply line(String s) { return new Reply(s, null); }
+
+    /** table reply, or the given marker (NO_MATCH, NO_RESULTS, "") when there are no rows */
+    static Reply rows(List<Object[]> rows, String whenEmpty) {
+        return rows.isEmpty() ? line(whenEmpty) : new Reply(null, rows);
+    }
+
+    boolean isTable()  { return rows != null; }
+
+    boolean isError()  { return line != null && line.startsWith("ERROR"); }
+
+    /** legacy text encoding */
+    String text() {
+        if (line != null) return line;
+        StringBuilder sb = new StringBuilder(rows.size() * 48);
+        for (Object[] r : rows) {
+            if (sb.length() > 0) sb.append(';');
+            for (int i = 0; i < r.length; i++) {
+                if (i > 0) sb.append(',');
+                sb.append(r[i]);
+            }
+        }
+        return sb.toString();
+    }
+}
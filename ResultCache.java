@@ -0,0 +1,119 @@
+package server;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Read‑through cache for result queries of finished elections.
+ * Final results only change when an election finishes (or votes are reset), so
+ * every entry carries the results version it was computed at; invalidate() bumps
+ * the version and drops everything.  Clients that send the version they hold get
+ * NOT_MODIFIED instead of the table.
+ *
+ * LRU, bounded by an estimate of the bytes held.  Concurrent misses on one key
+ * share a single load, so a crowd refreshing the same seat costs one query –
+ * but only within one version: a miss after invalidate() starts its own load
+ * rather than joining one that may have read the old results.
+ */
+final class ResultCache {
+
+    static final String NOT_MODIFIED = "NOT_MODIFIED";
+
+    interface Loader { Reply load() throws Exception; }
+
+    private record Entry(long version, Reply reply, long bytes) { }
+
+    private final long       maxBytes;
+    private final AtomicLong version = new AtomicLong(System.currentTimeMillis());  // never repeats across restarts
+    private final Map<String, CompletableFuture<Reply>> loading = new ConcurrentHashMap<>();   // key@version
+
+    /* guarded by this */
+    private final LinkedHashMap<String, Entry> lru = new LinkedHashMap<>(256, 0.75f, true);
+    private long bytes;
+
+    private final LongAdder hits = new LongAdder(), misses = new LongAdder(),
+                            notModified = new LongAdder(), evictions = new LongAdder();
+
+    ResultCache(long maxBytes) { this.maxBytes = maxBytes; }
+
+    long version() { return version.get(); }
+
+    void notModified() { notModified.increment(); }
+
+    /** results changed – new version, empty cache */
+    void invalidate() {
+        version.incrementAndGet();
+        synchronized (this) { lru.clear(); bytes = 0; }
+    }
+
+    /** cached reply for key, or load() it; errors are passed through, never cached */
+    Reply get(String key, Loader load) throws Exception {
+        long v = version.get();
+        synchronized (this) {
+            Entry e = lru.get(key);
+            if (e != null && e.version == v) { hits.increment(); return e.reply; }
+        }
+        misses.increment();
+
+        String                   lk   = key + "@" + v;
+        CompletableFuture<Reply> mine = new CompletableFuture<>();
+        CompletableFuture<Reply> f    = loading.putIfAbsent(lk, mine);
+        if (f != null) {
+            try { return f.get(); }
+            catch (ExecutionException ex) { throw (Exception) ex.getCause(); }
+        }
+        try {
+            Reply r = load.load();
+            if (!r.isError()) put(key, new Entry(v, r, size(r)));
+            mine.complete(r);
+            return r;
+        } catch (Exception ex) {
+            mine.completeExceptionally(ex);
+            throw ex;
+        } finally {
+            loading.remove(lk);
+        }
+    }
+
+    long hits()      { return hits.sum(); }
+    long misses()    { return misses.sum(); }
+    long evictions() { return evictions.sum(); }
+    synchronized int  entries() { return lru.size(); }
+    synchronized long bytes()   { return bytes; }
+
+    String stats() {
+        long h = hits.sum(), m = misses.sum();
+        synchronized (this) {
+            return String.format(Locale.ROOT, "version=%d,entries=%d,kb=%d,maxKb=%d,hits=%d,misses=%d,hitRatio=%.3f,notModified=%d,evictions=%d",
+                    version.get(), lru.size(), bytes >> 10, maxBytes >> 10, h, m,
+                    h + m == 0 ? 0.0 : (double) h / (h + m), notModified.sum(), evictions.sum());
+        }
+    }
+
+    /* ========================================================= */
+
+    private synchronized void put(String key, Entry e) {
+        if (e.version != version.get() || e.bytes > maxBytes) return;   // invalidated while loading / too big
+        Entry old = lru.put(key, e);
+        if (old != null) bytes -= old.bytes;
+        bytes += e.bytes;
+        for (Iterator<Entry> it = lru.values().iterator(); bytes > maxBytes && it.hasNext(); ) {
+            bytes -= it.next().bytes;
+            it.remove();
+            evictions.increment();
+        }
+    }
+
+    /** rough heap footprint */
+    private static long size(Reply r) {
+        if (!r.isTable()) return 64 + 2L * r.line.length();
+        long n = 64;
+        for (Object[] row : r.rows) {
+            n += 32 + 8L * row.length;
+            for (Object f : row) n += f instanceof String s ? 40 + 2L * s.length() : f == null ? 0 : 24;
+        }
+        return n;
+    }
+}
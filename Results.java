@@ -37,10 +37,10 @@ public final class Results {
         }
 
         /* 2️⃣  ask the server -------------------------------------- */
-        String resp = ServerClient.sendRequest("getSeatResults", seat);
+        ServerClient.Table resp = ServerClient.queryResults("getSeatResults", seat);
 
-        if (resp.startsWith("ERROR")) { error(parent,resp); return; }
-        if ("NO_RESULTS".equals(resp)) {
+        if (resp.isError()) { error(parent,resp.status()); return; }
+        if ("NO_RESULTS".equals(resp.status())) {
             info(parent,"No results yet for "+seat+
                        " (election not finished or no votes cast).");
             R_T.setModel(new DefaultTableModel(
@@ -53,8 +53,7 @@ public final class Results {
                 new String[]{"Candidate CNIC","Candidate","Party","Votes"}, 0);
 
         int total = 0;
-        for (String row : resp.split(";")) {               // candCNIC,candName,party,votes
-            String[] parts = row.split(",", 4);
+        for (String[] parts : resp.rows(4)) {              // candCNIC,candName,party,votes
             total += Integer.parseInt(parts[3]);
             model.addRow(parts);
         }
@@ -79,14 +78,14 @@ public static void showPartyResults(JTextField P_N,
         return;
     }
 
-    String resp = ServerClient.sendRequest("getPartyResults", party);
+    ServerClient.Table resp = ServerClient.queryResults("getPartyResults", party);
 
-    if (resp.startsWith("ERROR")) {
-        JOptionPane.showMessageDialog(parent, resp,
+    if (resp.isError()) {
+        JOptionPane.showMessageDialog(parent, resp.status(),
                 "Server error", JOptionPane.ERROR_MESSAGE);
         return;
     }
-    if ("NO_RESULTS".equals(resp)) {
+    if ("NO_RESULTS".equals(resp.status())) {
         JOptionPane.showMessageDialog(parent,
                 "No results yet for \"" + party + "\".",
                 "No data", JOptionPane.INFORMATION_MESSAGE);
@@ -99,8 +98,7 @@ public static void showPartyResults(JTextField P_N,
             new String[]{"Seat","Votes"}, 0);
 
     int total = 0;
-    for (String row : resp.split(";")) {       // seat,votes
-        String[] p = row.split(",", 2);
+    for (String[] p : resp.rows(2)) {          // seat,votes
         total += Integer.parseInt(p[1]);
         model.addRow(p);
     }
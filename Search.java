@@ -4,13 +4,15 @@ import javax.swing.*;
 import javax.swing.table.DefaultTableModel;
 import javax.swing.event.ListSelectionListener;
 import javax.swing.event.ListSelectionEvent;
+import java.util.List;
 
 public class Search {
 
+    private static final int PAGE = 500;                 // rows per request for the full lists
+
     /* ---------------------- CANDIDATES ---------------------- */
     public static void searchAllCandidates(JTable table) {
-        renderTable(table,
-                ServerClient.sendRequest("getAllCandidates", ""),
+        renderPages(table, "getAllCandidates",
                 new String[]{"CNIC","Name","Type","Seat","Party","Symbol"});
     }
 
@@ -21,9 +23,9 @@ public class Search {
             return;
         }
 
-        String resp = ServerClient.sendRequest("getCandidatesBySeat", seat);
+        ServerClient.Table resp = ServerClient.query("getCandidatesBySeat", seat);
 
-        switch (resp) {
+        switch (resp.status()) {
             case "NO_SEAT" -> { info(table, "No such constituency seat exists."); return; }
             case "NO_CANDIDATE" -> { info(table, "No candidate registered for this seat."); return; }
         }
@@ -34,8 +36,7 @@ public class Search {
 
     /* ---------------------- PARTIES ---------------------- */
     public static void searchAllParties(JTable table) {
-        renderTable(table,
-                ServerClient.sendRequest("getAllParties", ""),
+        renderPages(table, "getAllParties",
                 new String[]{"Party","Symbol","Leader CNIC"});
     }
 
@@ -46,9 +47,9 @@ public class Search {
             return;
         }
 
-        String resp = ServerClient.sendRequest("searchPartyByName", key);
+        ServerClient.Table resp = ServerClient.query("searchPartyByName", key);
 
-        if ("NO_MATCH".equals(resp)) {
+        if ("NO_MATCH".equals(resp.status())) {
             info(table, "No party matches your search.");
             return;
         }
@@ -58,8 +59,7 @@ public class Search {
 
     /* ---------------------- VOTERS ---------------------- */
     public static void searchAllVoters(JTable table) {
-        renderTable(table,
-                ServerClient.sendRequest("getAllVoters", ""),
+        renderPages(table, "getAllVoters",
                 new String[]{"CNIC","Name","Phone","City","Status"});
     }
 
@@ -70,8 +70,8 @@ public class Search {
             return;
         }
 
-        String resp = ServerClient.sendRequest("searchVoterByCnic", cnic);
-        if ("NO_MATCH".equals(resp)) {
+        ServerClient.Table resp = ServerClient.query("searchVoterByCnic", cnic);
+        if ("NO_MATCH".equals(resp.status())) {
             info(table, "No voter with this CNIC.");
             return;
         }
@@ -79,21 +79,86 @@ public class Search {
         renderTable(table, resp, new String[]{"CNIC","Name","Phone","City","Status"});
     }
 
+    /* ---------------------- EXPORT ---------------------- */
+    /** voter roll of one seat (or everyone if the field is empty or null) to a CSV file, streamed */
+    public static void exportVoterRoll(JTextField txtSeat, java.awt.Component parent) {
+        exportCsv("exportVoters", "voters", "CNIC,Name,Phone,City,Status,NA,PP", txtSeat, parent);
+    }
+
+    /** candidates of one seat (or all of them if the field is empty) to a CSV file, streamed */
+    public static void exportCandidateList(JTextField txtSeat, java.awt.Component parent) {
+        exportCsv("exportCandidates", "candidates", "CNIC,Name,Type,Seat,Party,Symbol", txtSeat, parent);
+    }
+
+    private static void exportCsv(String cmd, String what, String header,
+                                  JTextField txtSeat, java.awt.Component parent) {
+        String seat = txtSeat == null ? "" : txtSeat.getText().trim().toUpperCase();
+        if (!seat.isEmpty() && !seat.matches("^(NA|PP)-\\d+$")) {
+            JOptionPane.showMessageDialog(parent, "Seat must look like NA‑123 or PP‑456.",
+                    "Warning", JOptionPane.WARNING_MESSAGE);
+            return;
+        }
+        JFileChooser fc = new JFileChooser();
+        fc.setSelectedFile(new java.io.File(what + (seat.isEmpty() ? "" : "-" + seat) + ".csv"));
+        if (fc.showSaveDialog(parent) != JFileChooser.APPROVE_OPTION) return;
+        java.io.File file = fc.getSelectedFile();
+
+        new SwingWorker<String, Void>() {
+            long rows;
+            @Override protected String doInBackground() throws Exception {
+                try (java.io.PrintWriter w = new java.io.PrintWriter(file, java.nio.charset.StandardCharsets.UTF_8)) {
+                    w.println(header);
+                    return ServerClient.export(cmd, seat, header.split(",").length, chunk -> {
+                        for (String[] r : chunk) w.println(String.join(",", r));
+                        rows += chunk.size();
+                    });
+                }
+            }
+            @Override protected void done() {
+                String err;
+                try { err = get(); } catch (Exception e) { err = "ERROR:" + e.getMessage(); }
+                if (err != null)
+                    JOptionPane.showMessageDialog(parent, err, "Export failed", JOptionPane.ERROR_MESSAGE);
+                else
+                    JOptionPane.showMessageDialog(parent, rows + " " + what + " written to " + file,
+                            "Export done", JOptionPane.INFORMATION_MESSAGE);
+            }
+        }.execute();
+    }
+
     /* ------------------ Helpers ------------------ */
-    private static void renderTable(JTable table, String resp, String[] cols) {
-        if (resp.startsWith("ERROR")) {
-            JOptionPane.showMessageDialog(table, resp,
+    private static void renderTable(JTable table, ServerClient.Table resp, String[] cols) {
+        if (resp.isError()) {
+            JOptionPane.showMessageDialog(table, resp.status(),
                     "Server error", JOptionPane.ERROR_MESSAGE);
             return;
         }
 
         DefaultTableModel model = new DefaultTableModel(cols, 0);
+        for (String[] row : resp.rows(cols.length))
+            model.addRow(row);
+        table.setModel(model);
+    }
 
-        if (!resp.isBlank()) {
-            for (String row : resp.split(";"))
-                model.addRow(row.split(",", cols.length));
-        }
+    /** fills the table page by page in the background, so long lists do not freeze the UI */
+    private static void renderPages(JTable table, String cmd, String[] cols) {
+        DefaultTableModel model = new DefaultTableModel(cols, 0);
         table.setModel(model);
+
+        new SwingWorker<String, String[]>() {
+            @Override protected String doInBackground() {
+                return ServerClient.queryPages(cmd, PAGE, cols.length, rows -> rows.forEach(this::publish));
+            }
+            @Override protected void process(List<String[]> rows) {
+                for (String[] row : rows) model.addRow(row);
+            }
+            @Override protected void done() {
+                String err;
+                try { err = get(); } catch (Exception e) { err = "ERROR:" + e.getMessage(); }
+                if (err != null)
+                    JOptionPane.showMessageDialog(table, err, "Server error", JOptionPane.ERROR_MESSAGE);
+            }
+        }.execute();
     }
 
     private static void info(JTable t, String msg) {
@@ -135,22 +200,23 @@ public static void confirmVoterRegistration(JTextField txtCnic,
     }
 
     /* 2️⃣  Ask the server */
-    String resp = ServerClient.sendRequest("searchVoterByCnic", cnic);
+    ServerClient.Table resp = ServerClient.query("searchVoterByCnic", cnic);
 
-    if ("NO_MATCH".equals(resp)) {
+    if ("NO_MATCH".equals(resp.status())) {
         JOptionPane.showMessageDialog(parent,
                 "❌ This CNIC is not registered as a voter.",
                 "Not found", JOptionPane.INFORMATION_MESSAGE);
         return;
     }
-    if (resp.startsWith("ERROR")) {
-        JOptionPane.showMessageDialog(parent, resp,
+    if (resp.isError()) {
+        JOptionPane.showMessageDialog(parent, resp.status(),
                 "Server error", JOptionPane.ERROR_MESSAGE);
         return;
     }
 
     /* 3️⃣  Parse the 7‑field record */
-    String[] user = resp.split(",", -1);
+    List<String[]> found = resp.rows(7);
+    String[] user = found.isEmpty() ? new String[0] : found.get(0);
     if (user.length < 7) {                             // expecting 7 fields
         JOptionPane.showMessageDialog(parent,
                 "Malformed voter record (expected 7 fields, got "
@@ -163,19 +229,22 @@ public static void confirmVoterRegistration(JTextField txtCnic,
 
     /* 4️⃣  Fetch candidates for NA & PP */
     String[] headers = {"CNIC","Name","Type","Seat","Party","Symbol"};
-    StringBuilder combined = new StringBuilder();
-    boolean hasCand = false;
+    DefaultTableModel combined = new DefaultTableModel(headers, 0);
 
     for (String seat : new String[]{naSeat, ppSeat}) {
         if (seat.isEmpty()) continue;
-        String cands = ServerClient.sendRequest("getCandidatesBySeat", seat);
-        if (!cands.equals("NO_SEAT") && !cands.equals("NO_CANDIDATE")) {
-            combined.append(cands).append(";");
-            hasCand = true;
+        ServerClient.Table cands = ServerClient.query("getCandidatesBySeat", seat);
+        if (cands.isError()) {
+            JOptionPane.showMessageDialog(parent, cands.status(),
+                    "Server error", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        if (!cands.status().equals("NO_SEAT") && !cands.status().equals("NO_CANDIDATE")) {
+            for (String[] row : cands.rows(headers.length)) combined.addRow(row);
         }
     }
 
-    if (!hasCand) {
+    if (combined.getRowCount() == 0) {
         JOptionPane.showMessageDialog(parent,
                 "No candidate is available in your constituency.",
                 "No candidates", JOptionPane.INFORMATION_MESSAGE);
@@ -184,7 +253,7 @@ public static void confirmVoterRegistration(JTextField txtCnic,
     }
 
     /* 5️⃣  Render to table */
-    renderTable(table, combined.toString(), headers);
+    table.setModel(combined);
 
     JOptionPane.showMessageDialog(parent,
             "✅ Voter is registered.\nYou may now cast your vote.",
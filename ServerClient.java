@@ -2,79 +2,476 @@ package election_management_system;
 
 import java.io.*;
 import java.net.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import server.Wire;
 
 /**
- * One-liner socket helper.
- * Returns the first server reply line,
+ * Socket helper over a small pool of keep‑alive connections.
+ * sendRequest() returns the server reply line, query() the reply as table rows,
  * or "ERROR:<description>" if connection fails.
+ *
+ * Each connection offers the binary protocol first ("hello;bin/1");
+ * servers that do not answer "BIN/1" are spoken to in plain cmd;csv lines.
+ * Only replies are typed: a request still goes out as one csv string, so a
+ * value containing ',' splits on the server under both protocols.
  */
 public class ServerClient {
 
     private static final String SERVER_IP   = Election_Management_System.SERVER_IP;
     private static final int    SERVER_PORT = Election_Management_System.SERVER_PORT;
 
+    private static final int  POOL_SIZE       = 4;        // idle links kept open
+    private static final int  CONNECT_TIMEOUT = 2000;
+    private static final int  READ_TIMEOUT    = 30_000;
+    private static final long HEARTBEAT_MS    = 20_000;   // server drops idle links after 60 s
+    private static final long FEED_RETRY_MS   = 2_000;    // status feed reconnect, doubling up to …
+    private static final long FEED_RETRY_MAX  = 60_000;
+    private static final boolean BINARY       = !"false".equals(System.getProperty("ems.binary"));
+    private static final String  BATCH_SEP    = "\u001E";                  // same as the server
+    private static final String  BUSY_REPLY   = "ERROR:BUSY – server overloaded, please retry";
+
+    private static final BlockingDeque<Link> IDLE = new LinkedBlockingDeque<>(POOL_SIZE);
+
+    /** last result table per request and the server's results version it belongs to */
+    private record Held(String version, Table table) { }
+    private static final Map<String, Held> RESULTS = new ConcurrentHashMap<>();
+
+    static {
+        /* heartbeat: ping links that have been idle a while so the server keeps them open */
+        ScheduledExecutorService hb = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "ems-heartbeat");
+            t.setDaemon(true);
+            return t;
+        });
+        hb.scheduleWithFixedDelay(ServerClient::heartbeat, HEARTBEAT_MS, HEARTBEAT_MS, TimeUnit.MILLISECONDS);
+    }
+
     public static String sendRequest(String cmd, String data) {
-        try (Socket s = new Socket()) {
-            s.connect(new InetSocketAddress(SERVER_IP, SERVER_PORT), 2000);
+        return query(cmd, data).text();
+    }
+
+    /** same as sendRequest, but table replies arrive as rows (no comma splitting over binary links) */
+    public static Table query(String cmd, String data) {
+        String d = data == null ? "" : data;
+
+        for (int attempt = 0; ; attempt++) {
+            Link link = null;
+            try {
+                link = borrow();
+                Table reply = link.exchange(cmd, d);
+                if ("BUSY".equals(reply.status)) {          // server closes after BUSY
+                    link.close();
+                    return Table.line(BUSY_REPLY);
+                }
+                release(link);
+                return reply;
+
+            } catch (Busy e) {
+                return Table.line(BUSY_REPLY);              // refused at connect, before the hello
+            } catch (IOException e) {
+                if (link != null) link.close();
+                /* a pooled link may have been closed by the server meanwhile – retry once on a fresh one,
+                   but only if the request cannot have run (a timeout after sending may have) */
+                if (link != null && link.reused && attempt == 0 && link.unsent(e)) continue;
+                /* include exception class for clarity */
+                return Table.line("ERROR:" + e.getClass().getSimpleName() + " – " + e.getMessage());
+            }
+        }
+    }
 
-            PrintWriter  out = new PrintWriter(s.getOutputStream(), true);
-            BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream()));
+    /**
+     * query() for getSeatResults / getPartyResults: sends the results version we hold,
+     * so an unchanged table comes back as a short NOT_MODIFIED and is served from here.
+     */
+    public static Table queryResults(String cmd, String arg) {
+        String key  = cmd + ";" + arg;
+        Held   held = RESULTS.get(key);
+        Table  reply = query(cmd, arg + "," + (held == null ? "0" : held.version));
 
-            out.println(cmd + ";" + (data == null ? "" : data));
-            return in.readLine();
+        if ("NOT_MODIFIED".equals(reply.status) && held != null) return held.table;
+        if (reply.isError()) return reply;
 
+        List<String[]> rows = reply.rows(4);
+        if (rows.isEmpty() || !"VERSION".equals(rows.get(0)[0])) return reply;     // server without the cache
+        List<String[]> rest = new ArrayList<>(rows.subList(1, rows.size()));
+        Table t = rest.size() == 1 && rest.get(0).length == 1 ? Table.line(rest.get(0)[0]) : Table.rows(rest);
+        RESULTS.put(key, new Held(rows.get(0)[1], t));
+        return t;
+    }
+
+    /**
+     * Every page of a list command (getAllVoters, getAllCandidates, getAllParties):
+     * pages are fetched one after another, each handed to onPage without its NEXT row.
+     * Returns the first error reply, or null once the last page is in.
+     */
+    public static String queryPages(String cmd, int pageSize, int cols, Consumer<List<String[]>> onPage) {
+        String cursor = "";
+        while (true) {
+            Table reply = query(cmd, pageSize + "," + cursor);
+            if (reply.isError()) return reply.status();
+
+            List<String[]> rows = new ArrayList<>(reply.rows(cols));
+            String[] last = rows.isEmpty() ? null : rows.get(rows.size() - 1);
+            boolean  more = last != null && last.length == 2 && "NEXT".equals(last[0]);
+            if (more) rows.remove(rows.size() - 1);
+            onPage.accept(rows);
+            if (!more) return null;
+            cursor = last[1];
+        }
+    }
+
+    /**
+     * exportVoters / exportCandidates on a connection of its own (the reply is a stream
+     * of CHUNK lines, not one line).  Each chunk's rows go to onChunk as they arrive.
+     * Returns the error reply, or null once the server's END marker is read.
+     */
+    public static String export(String cmd, String data, int cols, Consumer<List<String[]>> onChunk) {
+        try (Socket s = new Socket()) {
+            s.connect(new InetSocketAddress(SERVER_IP, SERVER_PORT), CONNECT_TIMEOUT);
+            s.setSoTimeout(READ_TIMEOUT);
+            BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.UTF_8));
+            OutputStream  out = s.getOutputStream();
+            out.write((cmd + ";" + (data == null ? "" : data) + "\n").getBytes(StandardCharsets.UTF_8));
+            out.flush();
+
+            for (String line; (line = in.readLine()) != null; ) {
+                if (line.startsWith("END;")) return null;
+                if (!line.startsWith("CHUNK;")) return line.startsWith("ERROR") ? line : "ERROR:" + line;
+                List<String[]> rows = new ArrayList<>();
+                for (String row : line.substring(6).split(";")) rows.add(row.split(",", cols));
+                onChunk.accept(rows);
+            }
+            return "ERROR:export ended early";
         } catch (IOException e) {
-            /* include exception class for clarity */
             return "ERROR:" + e.getClass().getSimpleName() + " – " + e.getMessage();
         }
     }
-    
-    
-        public static int getVotersNumber() {
-        try (
-            Socket sock = new Socket(SERVER_IP, SERVER_PORT);
-            PrintWriter out = new PrintWriter(sock.getOutputStream(), true);
-            BufferedReader in = new BufferedReader(new InputStreamReader(sock.getInputStream()))
-        ) {
-            out.println("getVotersNumber");
-            String res = in.readLine();
-            return Integer.parseInt(res);
-        } catch (Exception e) {
-            e.printStackTrace();
-            return 0;
+
+    /**
+     * Reply of query(): a status line (OK…, NO_MATCH, ERROR:…) or table rows.
+     * Over a text link a table is kept as the raw line and split on demand.
+     */
+    public static final class Table {
+        private final String         status;     // null for binary tables
+        private final List<String[]> rows;
+
+        private Table(String status, List<String[]> rows) { this.status = status; this.rows = rows; }
+
+        static Table line(String s)              { return new Table(s, null); }
+        static Table rows(List<String[]> rows)   { return new Table(null, rows); }
+
+        /** the reply line, "" for a binary table */
+        public String status()  { return status == null ? "" : status; }
+
+        public boolean isError() { return status != null && status.startsWith("ERROR"); }
+
+        /** rows of at most cols fields */
+        public List<String[]> rows(int cols) {
+            if (rows != null) return rows;
+            List<String[]> out = new ArrayList<>();
+            if (status != null && !status.isBlank())
+                for (String row : status.split(";")) out.add(row.split(",", cols));
+            return out;
+        }
+
+        /** legacy cmd;csv rendering */
+        public String text() {
+            if (status != null) return status;
+            StringJoiner sj = new StringJoiner(";");
+            for (String[] r : rows) sj.add(String.join(",", r));
+            return sj.toString();
         }
     }
-        
-    public static int getPartiesCount() {
-    try (
-        Socket sock = new Socket(SERVER_IP, SERVER_PORT);
-        PrintWriter out = new PrintWriter(sock.getOutputStream(), true);
-        BufferedReader in = new BufferedReader(new InputStreamReader(sock.getInputStream()))
-    ) {
-        out.println("getPartiesCount");
-        String res = in.readLine();
-        return Integer.parseInt(res);
-    } catch (Exception e) {
-        e.printStackTrace();
-        return 0;
+
+
+    /**
+     * Several "cmd;data" requests in one round trip (server "batch" command).
+     * Replies come back in request order; on a transport error every slot holds that error.
+     */
+    public static String[] batch(String... requests) {
+        String reply = sendRequest("batch", String.join(BATCH_SEP, requests));
+        String[] out = reply.split(BATCH_SEP, -1);
+        if (out.length != requests.length) {
+            out = new String[requests.length];
+            Arrays.fill(out, reply.startsWith("ERROR") ? reply : "ERROR:bad batch reply");
+        }
+        return out;
     }
-}
 
-public static int getCandidatesCount() {
-    try (
-        Socket sock = new Socket(SERVER_IP, SERVER_PORT);
-        PrintWriter out = new PrintWriter(sock.getOutputStream(), true);
-        BufferedReader in = new BufferedReader(new InputStreamReader(sock.getInputStream()))
-    ) {
-        out.println("getCandidatesCount");
-        String res = in.readLine();
-        return Integer.parseInt(res);
-    } catch (Exception e) {
-        e.printStackTrace();
-        return 0;
+    /** voters, parties, candidates – one round trip for the admin dashboard */
+    public static int[] getDashboardCounts() {
+        String[] r = batch("getVotersNumber", "getPartiesCount", "getCandidatesCount");
+        int[] counts = new int[r.length];
+        for (int i = 0; i < r.length; i++) counts[i] = parseCount(r[i]);
+        return counts;
     }
-}
 
+    public static int getVotersNumber()    { return count("getVotersNumber"); }
+
+    public static int getPartiesCount()    { return count("getPartiesCount"); }
+
+    public static int getCandidatesCount() { return count("getCandidatesCount"); }
 
     public static boolean ping() { return "pong".equalsIgnoreCase(sendRequest("ping", "")); }
+
+    /* election status pushed by the server over one "subscribe;status" connection;
+       null while that connection is down, the server does not support it, or before the first event.
+       STOP is the running election's stop time, null if there is none */
+    private static volatile String STATUS, STOP;
+    private static volatile Thread statusFeed;
+    private static final List<BiConsumer<String, String>> WATCHERS = new CopyOnWriteArrayList<>();   // notified under WATCHERS
+
+    /** Started / Scheduled / Finished … from the push feed, polled only while the feed is down */
+    public static String electionStatus() {
+        if (statusFeed == null) startStatusFeed();
+        String s = STATUS;
+        return s != null ? s : sendRequest("getElectionStatus", "");
+    }
+
+    /**
+     * w(status, stopTime) now and again on every status or stop‑time change the server
+     * pushes; stopTime is "yyyy-MM-dd HH:mm:ss…" or null.  Called on the feed thread –
+     * Swing code has to move to the EDT itself.  Without a feed (older server) the
+     * first call comes from a poll and no change is reported.
+     */
+    public static void watchElection(BiConsumer<String, String> w) {
+        if (statusFeed == null) startStatusFeed();
+        String status = null, stop = null;
+        if (STATUS == null) {
+            status = sendRequest("getElectionStatus", "");
+            if ("Started".equals(status)) stop = stopTime(sendRequest("selectElectionStopTime", ""));
+        }
+        synchronized (WATCHERS) {
+            WATCHERS.add(w);
+            if (STATUS != null) { status = STATUS; stop = STOP; }      // the feed came up meanwhile
+            w.accept(status, stop);
+        }
+    }
+
+    /** a stop‑time reply or event field, null for none / an error */
+    private static String stopTime(String s) {
+        return s == null || s.isBlank() || s.equals("null") || s.equals("NONE") || s.startsWith("ERROR") ? null : s;
+    }
+
+    private static synchronized void startStatusFeed() {
+        if (statusFeed != null) return;
+        statusFeed = new Thread(ServerClient::statusFeed, "ems-status-feed");
+        statusFeed.setDaemon(true);
+        statusFeed.start();
+    }
+
+    private static void statusFeed() {
+        long retry = FEED_RETRY_MS;
+        while (true) {
+            try (Socket s = new Socket()) {
+                s.connect(new InetSocketAddress(SERVER_IP, SERVER_PORT), CONNECT_TIMEOUT);
+                s.setSoTimeout(3 * READ_TIMEOUT);                   // server pings every 30 s
+                BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.UTF_8));
+                OutputStream  out = s.getOutputStream();
+                out.write("subscribe;status\n".getBytes(StandardCharsets.UTF_8));
+                out.flush();
+                String first = in.readLine();
+                if (first != null && first.startsWith("ERROR") && first.contains("unknown cmd")) return;   // older server – keep polling
+
+                if ("SUBSCRIBED".equals(first)) {                   // anything else (BUSY, …) – try again later
+                    retry = FEED_RETRY_MS;
+                    for (String line; (line = in.readLine()) != null; ) {
+                        if (line.startsWith("EVENT;status;")) pushed(line.substring(13).split(",", 3));
+                    }
+                }
+            } catch (IOException ignored) {
+            } finally {
+                STATUS = null;
+                STOP   = null;
+            }
+            try { Thread.sleep(retry); } catch (InterruptedException e) { return; }
+            retry = Math.min(2 * retry, FEED_RETRY_MAX);
+        }
+    }
+
+    /** status,latestId,stopTime */
+    private static void pushed(String[] f) {
+        synchronized (WATCHERS) {
+            STOP   = f.length > 2 ? stopTime(f[2]) : null;
+            STATUS = f[0];
+            for (BiConsumer<String, String> w : WATCHERS) {
+                try { w.accept(STATUS, STOP); } catch (RuntimeException e) { e.printStackTrace(); }
+            }
+        }
+    }
+
+    /* ------------------------------------------------------------ */
+    /*  helpers                                                     */
+    /* ------------------------------------------------------------ */
+
+    private static int count(String cmd) {
+        return parseCount(sendRequest(cmd, ""));
+    }
+
+    private static int parseCount(String res) {
+        try {
+            return Integer.parseInt(res.trim());
+        } catch (NumberFormatException e) {
+            System.out.println("✗ count → " + res);
+            return 0;
+        }
+    }
+
+    private static Link borrow() throws IOException {
+        Link link = IDLE.pollFirst();
+        return link != null ? link : new Link();
+    }
+
+    private static void release(Link link) {
+        link.lastUsed = System.currentTimeMillis();
+        link.reused   = true;
+        if (!IDLE.offerFirst(link)) link.close();          // pool full
+    }
+
+    private static void heartbeat() {
+        for (int i = IDLE.size(); i > 0; i--) {
+            Link link = IDLE.pollLast();                    // oldest first
+            if (link == null) return;
+            if (System.currentTimeMillis() - link.lastUsed < HEARTBEAT_MS) {
+                if (!IDLE.offerLast(link)) link.close();
+                continue;
+            }
+            try {
+                if (!"pong".equals(link.exchange("ping", "").status)) throw new IOException("bad heartbeat reply");
+                link.lastUsed = System.currentTimeMillis();
+                if (!IDLE.offerLast(link)) link.close();
+            } catch (IOException e) {
+                link.close();
+            }
+        }
+    }
+
+    /** the server answered a new connection with BUSY and closed it */
+    private static final class Busy extends IOException {
+        private static final long serialVersionUID = 1L;
+        Busy() { super("server busy"); }
+    }
+
+    /** one keep‑alive TCP connection to the server */
+    private static final class Link {
+        private static final byte T_NULL = 0, T_STR = 1, T_INT = 2, T_LONG = 3, K_ROWS = 1;
+
+        private final Socket           sock = new Socket();
+        private final DataInputStream  in;
+        private final DataOutputStream out;
+        private boolean binary;
+        private int     nextId;
+        long    lastUsed = System.currentTimeMillis();
+        boolean reused;
+        private boolean sent, answered;                // of the current exchange
+
+        Link() throws IOException {
+            try {
+                sock.connect(new InetSocketAddress(SERVER_IP, SERVER_PORT), CONNECT_TIMEOUT);
+                sock.setSoTimeout(READ_TIMEOUT);
+                sock.setTcpNoDelay(true);
+                in  = new DataInputStream(new BufferedInputStream(sock.getInputStream()));
+                out = new DataOutputStream(new BufferedOutputStream(sock.getOutputStream()));
+                if (BINARY) {
+                    String ack = exchangeText("hello;bin/1");
+                    if ("BUSY".equals(ack)) throw new Busy();
+                    binary = "BIN/1".equals(ack);
+                }
+            } catch (IOException e) {
+                close();
+                throw e;
+            }
+        }
+
+        /** after e: the write failed, or the server closed the link before any reply byte */
+        boolean unsent(IOException e) {
+            return !sent || (e instanceof EOFException && !answered);
+        }
+
+        Table exchange(String cmd, String data) throws IOException {
+            sent = answered = false;
+            return binary ? exchangeBinary(cmd, data) : Table.line(exchangeText(cmd + ";" + data));
+        }
+
+        private String exchangeText(String line) throws IOException {
+            out.write(line.getBytes());
+            out.write('\n');
+            out.flush();
+            sent = true;
+
+            ByteArrayOutputStream buf = new ByteArrayOutputStream(128);
+            for (int b; (b = in.read()) != '\n'; ) {
+                if (b < 0) throw new EOFException("server closed the connection");
+                answered = true;
+                buf.write(b);
+            }
+            String reply = buf.toString();
+            return reply.endsWith("\r") ? reply.substring(0, reply.length() - 1) : reply;
+        }
+
+        /* see server.Wire for the frame layout; data goes as a single STR field */
+        private Table exchangeBinary(String cmd, String data) throws IOException {
+            int id = ++nextId;
+            int op = Wire.opcode(cmd);                       // the server's own table
+
+            ByteArrayOutputStream buf = new ByteArrayOutputStream(64);
+            DataOutputStream f = new DataOutputStream(buf);
+            f.writeInt(id);
+            f.writeShort(op);
+            f.writeShort((op == 0 ? 1 : 0) + (data.isEmpty() ? 0 : 1));
+            if (op == 0) writeStr(f, cmd);
+            if (!data.isEmpty()) writeStr(f, data);
+            out.writeInt(buf.size());
+            buf.writeTo(out);
+            out.flush();
+            sent = true;
+
+            if (in.read() < 0) throw new EOFException("server closed the connection");
+            answered = true;
+            in.readUnsignedByte();  in.readUnsignedShort();           // rest of the frame length
+            if (in.readInt() != id) throw new IOException("reply out of sequence");
+            in.readUnsignedShort();                                   // opcode echo
+            if (in.readByte() != K_ROWS) {
+                return Table.line(String.valueOf(readField()));
+            }
+            int n = in.readInt();
+            List<String[]> rows = new ArrayList<>(n);
+            for (int r = 0; r < n; r++) {
+                String[] row = new String[in.readUnsignedShort()];
+                for (int i = 0; i < row.length; i++) row[i] = String.valueOf(readField());
+                rows.add(row);
+            }
+            return Table.rows(rows);
+        }
+
+        private static void writeStr(DataOutputStream f, String s) throws IOException {
+            byte[] b = s.getBytes(StandardCharsets.UTF_8);
+            f.writeByte(T_STR);
+            f.writeInt(b.length);
+            f.write(b);
+        }
+
+        private Object readField() throws IOException {
+            byte t = in.readByte();
+            return switch (t) {
+                case T_NULL -> null;
+                case T_INT  -> in.readInt();
+                case T_LONG -> in.readLong();
+                case T_STR  -> {
+                    byte[] b = new byte[in.readInt()];
+                    in.readFully(b);
+                    yield new String(b, StandardCharsets.UTF_8);
+                }
+                default -> throw new IOException("unknown field type " + t);
+            };
+        }
+
+        void close() {
+            try { sock.close(); } catch (IOException ignored) { }
+        }
+    }
 }
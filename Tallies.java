@@ -0,0 +1,204 @@
+package server;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * Vote counts per election → seat → candidate CNIC, kept next to the Votes table
+ * so results need no COUNT(*) … GROUP BY over millions of rows.
+ *
+ *  • every vote writer commits through commit(), which adds the stored rows
+ *  • start‑up reads the last checkpoint and counts only rows with a higher Votes.ID;
+ *    without a usable checkpoint it counts the whole table once
+ *  • a checkpoint (counts + highest Votes.ID) is written every checkpointMs
+ *
+ * Counters are LongAdders, so the two writer threads never contend with readers.
+ * The read/write lock only keeps a reload or checkpoint from seeing a vote twice:
+ * commits hold it shared, load/checkpoint exclusively – a checkpoint just long
+ * enough to read MAX(ID) and copy the counters, the file is written afterwards.
+ * Listeners see every committed batch after it is counted.
+ */
+final class Tallies {
+
+    private static final String MAGIC = "ems-tallies/1";
+
+    private final DbPool pool;
+    private final Path   file;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /* election → seat → candidate → votes; null until loaded */
+    private volatile Map<Integer, Map<String, Map<String, LongAdder>>> counts;
+    private final List<Consumer<List<VoteIngest.Vote>>> listeners = new CopyOnWriteArrayList<>();
+
+    Tallies(DbPool pool, Path file, long checkpointMs) {
+        this.pool = pool;
+        this.file = file;
+        try { load(); }
+        catch (SQLException | IOException e) { System.out.println("⚠️ tallies: " + e.getMessage() + " – will retry"); }
+
+        ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "ems-tallies");
+            t.setDaemon(true);
+            return t;
+        });
+        timer.scheduleWithFixedDelay(this::checkpoint, checkpointMs, checkpointMs, TimeUnit.MILLISECONDS);
+    }
+
+    /** commits c and counts rows – the votes that transaction inserted */
+    void commit(Connection c, List<VoteIngest.Vote> rows) throws SQLException {
+        lock.readLock().lock();
+        try {
+            c.commit();
+            Map<Integer, Map<String, Map<String, LongAdder>>> m = counts;
+            if (m != null) for (VoteIngest.Vote v : rows) adder(m, v.election(), v.seat(), v.candidate()).increment();
+            for (Consumer<List<VoteIngest.Vote>> l : listeners) l.accept(rows);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    void listen(Consumer<List<VoteIngest.Vote>> l) { listeners.add(l); }
+
+    /** candidate CNIC → votes on one seat (empty if none) */
+    Map<String, Long> seat(int election, String seat) throws SQLException {
+        Map<String, Map<String, LongAdder>> e = loaded().get(election);
+        Map<String, LongAdder> s = e == null ? null : e.get(seat);
+        Map<String, Long> out = new HashMap<>();
+        if (s != null) s.forEach((cand, n) -> out.put(cand, n.sum()));
+        return out;
+    }
+
+    /** seat → candidate CNIC → votes of one election */
+    Map<String, Map<String, Long>> election(int election) throws SQLException {
+        Map<String, Map<String, LongAdder>> e = loaded().get(election);
+        Map<String, Map<String, Long>> out = new TreeMap<>();
+        if (e != null) e.forEach((seat, s) -> {
+            Map<String, Long> c = new HashMap<>();
+            s.forEach((cand, n) -> c.put(cand, n.sum()));
+            out.put(seat, c);
+        });
+        return out;
+    }
+
+    /* ========================================================= */
+
+    private Map<Integer, Map<String, Map<String, LongAdder>>> loaded() throws SQLException {
+        Map<Integer, Map<String, Map<String, LongAdder>>> m = counts;
+        if (m != null) return m;
+        try { return load(); }
+        catch (IOException e) { throw new SQLException("tallies: " + e.getMessage(), e); }
+    }
+
+    private static LongAdder adder(Map<Integer, Map<String, Map<String, LongAdder>>> m,
+                                   int election, String seat, String cand) {
+        return m.computeIfAbsent(election, k -> new ConcurrentHashMap<>())
+                .computeIfAbsent(seat, k -> new ConcurrentHashMap<>())
+                .computeIfAbsent(cand, k -> new LongAdder());
+    }
+
+    private Map<Integer, Map<String, Map<String, LongAdder>>> load() throws SQLException, IOException {
+        lock.writeLock().lock();
+        try (Connection c = pool.borrow()) {
+            if (counts != null) return counts;
+            long t0 = System.currentTimeMillis();
+
+            Map<Integer, Map<String, Map<String, LongAdder>>> m = new ConcurrentHashMap<>();
+            long hwm = readCheckpoint(c, m);
+            if (hwm < 0) m.clear();
+
+            try (PreparedStatement ps = c.prepareStatement("""
+                    SELECT ElectionID, Seat, CandidateCNIC, COUNT(*) FROM Votes
+                     WHERE ID > ? GROUP BY ElectionID, Seat, CandidateCNIC
+                    """)) {
+                ps.setLong(1, Math.max(hwm, 0));
+                ResultSet rs = ps.executeQuery();
+                while (rs.next())
+                    adder(m, rs.getInt(1), rs.getString(2).trim().toUpperCase(), rs.getString(3)).add(rs.getLong(4));
+            }
+            counts = m;
+            System.out.println("🧮 tallies loaded " + (hwm < 0 ? "from Votes" : "from checkpoint")
+                               + " in " + (System.currentTimeMillis() - t0) + " ms");
+            return m;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** fills m from the checkpoint file; its Votes.ID mark, or -1 if there is none or Votes changed under it */
+    private long readCheckpoint(Connection c, Map<Integer, Map<String, Map<String, LongAdder>>> m) throws SQLException {
+        if (!Files.exists(file)) return -1;
+        long hwm, total, sum = 0;
+        try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String[] head = in.readLine().split(" ");
+            if (!MAGIC.equals(head[0])) return -1;
+            hwm   = Long.parseLong(head[1]);
+            total = Long.parseLong(head[2]);
+            for (String line; (line = in.readLine()) != null; ) {
+                String[] f = line.split(",");
+                long n = Long.parseLong(f[3]);
+                adder(m, Integer.parseInt(f[0]), f[1], f[2]).add(n);
+                sum += n;
+            }
+        } catch (IOException | RuntimeException e) {
+            System.out.println("⚠️ tallies checkpoint unreadable: " + e.getMessage());
+            return -1;
+        }
+
+        /* votes deleted or reset since? then the checkpoint is worthless */
+        try (PreparedStatement ps = c.prepareStatement("SELECT COUNT(*) FROM Votes WHERE ID <= ?")) {
+            ps.setLong(1, hwm);
+            ResultSet rs = ps.executeQuery();
+            rs.next();
+            return sum == total && rs.getLong(1) == total ? hwm : -1;
+        }
+    }
+
+    private void checkpoint() {
+        if (counts == null) {
+            try { load(); } catch (SQLException | IOException e) { return; }
+        }
+        try (Connection c = pool.borrow(); Statement st = c.createStatement()) {
+            /* exclusive only for MAX(ID) (one index probe) and a copy of the counters –
+               no commit in flight meanwhile, so the copy is exactly the rows up to hwm */
+            long hwm, total = 0;
+            List<Object[]> snap = new ArrayList<>();
+            lock.writeLock().lock();
+            try (ResultSet rs = st.executeQuery("SELECT COALESCE(MAX(ID),0) FROM Votes")) {
+                rs.next();
+                hwm = rs.getLong(1);
+                for (var e : counts.entrySet())
+                    for (var s : e.getValue().entrySet())
+                        for (var cand : s.getValue().entrySet())
+                            snap.add(new Object[]{ e.getKey(), s.getKey(), cand.getKey(), cand.getValue().sum() });
+            } finally {
+                lock.writeLock().unlock();
+            }
+
+            StringBuilder body = new StringBuilder();
+            for (Object[] r : snap) {
+                total += (Long) r[3];
+                body.append(r[0]).append(',').append(r[1]).append(',').append(r[2]).append(',').append(r[3]).append('\n');
+            }
+
+            /* a transaction that inserted below hwm but committed later would make it useless at start‑up */
+            try (PreparedStatement ps = c.prepareStatement("SELECT COUNT(*) FROM Votes WHERE ID <= ?")) {
+                ps.setLong(1, hwm);
+                ResultSet rs = ps.executeQuery();
+                if (!rs.next() || rs.getLong(1) != total) return;         // next round
+            }
+
+            Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+            Files.writeString(tmp, MAGIC + " " + hwm + " " + total + "\n" + body, StandardCharsets.UTF_8);
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (SQLException | IOException e) {
+            System.out.println("⚠️ tallies checkpoint: " + e.getMessage());
+        }
+    }
+}
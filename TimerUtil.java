@@ -29,4 +29,8 @@ public class TimerUtil {
         this.stopTime = stopTime;
         swingTimer.start();
     }
+
+    public void stop() {
+        swingTimer.stop();
+    }
 }
@@ -0,0 +1,277 @@
+package server;
+
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Registered and voted counts for turnout reports, kept in memory instead of
+ * joining Users with Votes on every poll.
+ *
+ * Voters are grouped into cells – one per distinct (province, division, district,
+ * city, NA seat, PP seat, gender) – each with a registered counter and, per election,
+ * a voted counter.  A CNIC → cell map (primitive, ~12 bytes per voter) lets a vote
+ * find its cell.  signupUser adds to registered; every vote commit (Tallies listener)
+ * adds to voted the first time that voter is seen in the election.  A report at any
+ * level just sums the few thousand cells.
+ *
+ * The same map is the voter roll castVote checks a ballot against (admins are
+ * in it, but in no cell).  It also knows how each CNIC is spelled in Users, so
+ * Votes gets exactly that string: uniq_vote and the foreign key compare strings.
+ * Plain 13 digits cost nothing extra, 5‑7‑1 dashes a bit in a set, anything else
+ * a map entry.
+ *
+ * Users is read once; an election's voted counts are read from Votes the first
+ * time it is asked for.  Votes seen both there and by the listener count once –
+ * each election keeps the set of voters already counted.
+ */
+final class Turnout {
+
+    /** report levels, outermost first */
+    enum Level {
+        PROVINCE(Cell::province), DIVISION(Cell::division), DISTRICT(Cell::district), CITY(Cell::city),
+        NA(Cell::na), PP(Cell::pp), ALL(c -> "ALL");
+
+        final Function<Cell, String> of;
+        Level(Function<Cell, String> of) { this.of = of; }
+    }
+
+    record Cell(String province, String division, String district, String city, String na, String pp, String gender) { }
+
+    /** one line of a report; gender null when not split */
+    record Row(String unit, String gender, long registered, long voted) { }
+
+    private static final class Counts {
+        final LongAdder registered = new LongAdder();
+        final Map<Integer, LongAdder> voted = new ConcurrentHashMap<>();
+    }
+
+    private static final class Election {
+        final VotedSet.LongSet counted = new VotedSet.LongSet();
+        volatile boolean loaded;
+    }
+
+    /** a signup that arrived while Users was still being read */
+    private record Signup(long key, String cnic, Cell cell) { }
+
+    private static final int ADMIN = -2;                    // in Users, not counted
+
+    private final DbPool pool;
+    private final Map<Cell, Integer>     ids    = new ConcurrentHashMap<>();
+    private final List<Cell>             cells  = new CopyOnWriteArrayList<>();   // index = cell id; added under this
+    private final List<Counts>           counts = new CopyOnWriteArrayList<>();
+    private final LongIntMap             voters = new LongIntMap();       // CNIC key → cell id
+    private final VotedSet.LongSet       dashed = new VotedSet.LongSet(); // spelled 12345-1234567-1 in Users
+    private final Map<Long, String>      odd    = new ConcurrentHashMap<>(); // any other spelling
+    private final Map<Integer, Election> elections = new ConcurrentHashMap<>();
+    private final Queue<Signup>          early  = new ConcurrentLinkedQueue<>();
+    private volatile boolean             loaded;
+
+    Turnout(DbPool pool) {
+        this.pool = pool;
+        try { load(); }
+        catch (SQLException e) { System.out.println("⚠️ turnout: " + e.getMessage() + " – will retry"); }
+    }
+
+    /** after a successful INSERT INTO Users */
+    void register(String cnic, String province, String division, String district, String city,
+                  String na, String pp, String gender) {
+        long k = Cnic.key(cnic);
+        if (k < 0) return;
+        Signup s = new Signup(k, cnic, new Cell(norm(province), norm(division), norm(district), norm(city),
+                                                norm(na), norm(pp), norm(gender)));
+        if (loaded) { add(s); return; }
+        early.add(s);                                              // a running load may have read Users before it
+        if (loaded) drainEarly();                                  // … and finished meanwhile
+    }
+
+    /** the CNIC as spelled in Users, or null if this key is not registered */
+    String voter(long cnic) throws SQLException {
+        if (!loaded) load();
+        if (voters.get(cnic) == -1) return null;
+        String o = odd.get(cnic);
+        return o != null ? o : Cnic.format(cnic, dashed.contains(cnic));
+    }
+
+    /** Tallies listener: rows were just committed */
+    void committed(List<VoteIngest.Vote> rows) {
+        if (!loaded) return;
+        for (VoteIngest.Vote v : rows) {
+            long k = Cnic.key(v.voter());
+            int  id = k < 0 ? -1 : voters.get(k);
+            if (id < 0) continue;
+            if (elections.computeIfAbsent(v.election(), e -> new Election()).counted.add(k))
+                counts(id).voted.computeIfAbsent(v.election(), e -> new LongAdder()).increment();
+        }
+    }
+
+    /** unit → counts at this level, optionally only units named `only`, optionally by gender */
+    List<Row> report(int election, Level level, String only, boolean byGender) throws SQLException {
+        loaded(election);
+        String want = only == null || only.isBlank() ? null : norm(only);
+        Map<List<String>, long[]> sum = new TreeMap<>(Comparator.<List<String>, String>comparing(l -> l.get(0))
+                                                                 .thenComparing(l -> l.get(1)));
+        for (int i = 0; i < cells.size(); i++) {
+            Cell c = cells.get(i);
+            String unit = level.of.apply(c);
+            if (want != null && !want.equals(unit)) continue;
+            long[] s = sum.computeIfAbsent(List.of(unit, byGender ? c.gender() : ""), k -> new long[2]);
+            s[0] += counts.get(i).registered.sum();
+            LongAdder v = counts.get(i).voted.get(election);
+            if (v != null) s[1] += v.sum();
+        }
+        List<Row> out = new ArrayList<>(sum.size());
+        sum.forEach((k, s) -> out.add(new Row(k.get(0), byGender ? k.get(1) : null, s[0], s[1])));
+        return out;
+    }
+
+    /** seat (NA or PP) → registered voters */
+    Map<String, Long> registeredBySeat() throws SQLException {
+        if (!loaded) load();
+        Map<String, Long> m = new HashMap<>();
+        for (int i = 0; i < cells.size(); i++) {
+            long n = counts.get(i).registered.sum();
+            m.merge(cells.get(i).na(), n, Long::sum);
+            m.merge(cells.get(i).pp(), n, Long::sum);
+        }
+        return m;
+    }
+
+    /* ========================================================= */
+
+    private static String norm(String s) { return s == null ? "" : s.trim().toUpperCase(); }
+
+    private void spelling(long k, String raw) {
+        if (raw.equals(Cnic.format(k, false))) return;
+        if (raw.equals(Cnic.format(k, true))) dashed.add(k);
+        else odd.put(k, raw);
+    }
+
+    private void add(Signup s) {
+        int id = cell(s.cell());
+        if (voters.put(s.key(), id)) { spelling(s.key(), s.cnic()); counts(id).registered.increment(); }
+    }
+
+    /** signups queued during the load; one already read from Users is not counted twice */
+    private void drainEarly() {
+        for (Signup s; (s = early.poll()) != null; ) add(s);
+    }
+
+    private synchronized int cell(Cell c) {
+        Integer id = ids.get(c);
+        if (id != null) return id;
+        counts.add(new Counts());                               // counts first: a reader indexing by cells never misses
+        cells.add(c);
+        ids.put(c, cells.size() - 1);
+        return cells.size() - 1;
+    }
+
+    private Counts counts(int id) { return counts.get(id); }
+
+    private synchronized void load() throws SQLException {
+        if (loaded) return;
+        long t0 = System.currentTimeMillis();
+        int  n  = 0;
+        try (Connection c = pool.borrow();
+             PreparedStatement ps = c.prepareStatement("""
+                 SELECT CNIC, Province, Division, District, City, NAConstituency, ProvincialConstituency, Gender, Status
+                   FROM Users
+                 """, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            ps.setFetchSize(Integer.MIN_VALUE);                  // Connector/J: stream rows instead of buffering
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    long k = Cnic.key(rs.getString(1));
+                    if (k < 0) continue;
+                    if ("Admin".equals(rs.getString(9))) {
+                        if (voters.put(k, ADMIN)) spelling(k, rs.getString(1));
+                        continue;
+                    }
+                    int id = cell(new Cell(norm(rs.getString(2)), norm(rs.getString(3)), norm(rs.getString(4)),
+                                           norm(rs.getString(5)), norm(rs.getString(6)), norm(rs.getString(7)),
+                                           norm(rs.getString(8))));
+                    if (voters.put(k, id)) { spelling(k, rs.getString(1)); counts.get(id).registered.increment(); n++; }
+                }
+            }
+        }
+        loaded = true;
+        drainEarly();
+        System.out.println("📊 turnout: " + n + " voters in " + cells.size() + " cells in "
+                           + (System.currentTimeMillis() - t0) + " ms");
+    }
+
+    /** voted counts of this election, read from Votes on first use */
+    private void loaded(int election) throws SQLException {
+        if (!loaded) load();
+        Election e = elections.computeIfAbsent(election, x -> new Election());
+        if (e.loaded) return;
+        synchronized (e) {
+            if (e.loaded) return;
+            try (Connection c = pool.borrow();
+                 PreparedStatement ps = c.prepareStatement("SELECT DISTINCT VoterCNIC FROM Votes WHERE ElectionID=?",
+                                                           ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+                ps.setFetchSize(Integer.MIN_VALUE);
+                ps.setInt(1, election);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        long k  = Cnic.key(rs.getString(1));
+                        int  id = k < 0 ? -1 : voters.get(k);
+                        if (id >= 0 && e.counted.add(k))
+                            counts(id).voted.computeIfAbsent(election, x -> new LongAdder()).increment();
+                    }
+                }
+            }
+            e.loaded = true;
+        }
+    }
+
+    /** linear‑probing map of non‑negative long → int (not -1); slot key 0 means empty, so keys are stored +1 */
+    static final class LongIntMap {
+        private long[] keys = new long[1024];
+        private int[]  vals = new int[1024];
+        private int    size;
+
+        /** false if the key was already there (its value is kept) */
+        synchronized boolean put(long key, int val) {
+            long k = key + 1;
+            int  i = find(keys, k);
+            if (keys[i] == k) return false;
+            keys[i] = k;
+            vals[i] = val;
+            if (++size * 2 > keys.length) grow();
+            return true;
+        }
+
+        /** value, or -1 */
+        synchronized int get(long key) {
+            long k = key + 1;
+            int  i = find(keys, k);
+            return keys[i] == k ? vals[i] : -1;
+        }
+
+        private void grow() {
+            long[] nk = new long[keys.length * 2];
+            int[]  nv = new int[nk.length];
+            for (int i = 0; i < keys.length; i++)
+                if (keys[i] != 0) { int j = find(nk, keys[i]); nk[j] = keys[i]; nv[j] = vals[i]; }
+            keys = nk;
+            vals = nv;
+        }
+
+        private static int find(long[] t, long k) {
+            int mask = t.length - 1;
+            int i = (int) (mix(k) & mask);
+            while (t[i] != 0 && t[i] != k) i = (i + 1) & mask;
+            return i;
+        }
+
+        private static long mix(long k) {
+            k ^= k >>> 33;
+            k *= 0xff51afd7ed558ccdL;
+            return k ^ (k >>> 33);
+        }
+    }
+}
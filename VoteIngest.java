@@ -0,0 +1,229 @@
+package server;
+
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Group commit for votes.
+ * Callers validate first, then submit() a ballot (one or more votes of one voter)
+ * and block until the batch holding it is durable.  A single flusher thread takes
+ * up to BATCH_MAX votes or whatever arrived within FLUSH_MS and writes them in one
+ * transaction on its own connection:
+ *   1. look up which (election, voter, seat) keys of the batch already exist
+ *   2. one multi‑row INSERT for every ballot that is still clean
+ *   3. COMMIT (through Tallies, which counts the rows) – only then is each caller answered
+ * A ballot is all‑or‑nothing: one duplicate seat rejects the whole ballot.
+ * If the INSERT still breaks a key – uniq_vote after another server raced us, or
+ * a foreign key – the batch is replayed ballot by ballot under savepoints, so
+ * only the offending ballot fails and every caller gets its own answer.
+ */
+final class VoteIngest {
+
+    static final String OK        = "OK:Vote cast";
+    static final String DUPLICATE = "ERROR:Already voted";
+
+    record Vote(int election, String voter, String seat, String candidate) {
+        String key() { return election + "|" + voter + "|" + seat; }
+    }
+
+    private static final class Pending {
+        final List<Vote>                votes;
+        final CompletableFuture<String> done = new CompletableFuture<>();
+        Pending(List<Vote> votes) { this.votes = votes; }
+    }
+
+    private final DbPool                 pool;
+    private final Tallies                tallies;
+    private final int                    batchMax;
+    private final long                   flushNanos, timeoutMs;
+    private final BlockingQueue<Pending> queue;
+    private final Map<Integer, AtomicInteger> open = new ConcurrentHashMap<>();   // election → ballots not yet answered
+    private Connection                   cn;                  // flusher thread only
+
+    VoteIngest(DbPool pool, Tallies tallies, int batchMax, long flushMs, int queueMax, long timeoutMs) {
+        this.pool       = pool;
+        this.tallies    = tallies;
+        this.batchMax   = batchMax;
+        this.flushNanos = TimeUnit.MILLISECONDS.toNanos(flushMs);
+        this.timeoutMs  = timeoutMs;
+        this.queue      = new ArrayBlockingQueue<>(queueMax);
+
+        Thread t = new Thread(this::flushLoop, "ems-vote-flusher");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    /** blocks until the ballot is committed or rejected; returns OK, DUPLICATE or ERROR:… */
+    String submit(List<Vote> ballot) {
+        Pending p = new Pending(ballot);
+        AtomicInteger n = open.computeIfAbsent(ballot.get(0).election(), k -> new AtomicInteger());
+        n.incrementAndGet();
+        if (!queue.offer(p)) { n.decrementAndGet(); return "ERROR:BUSY – vote queue full, please retry"; }
+        p.done.whenComplete((r, t) -> n.decrementAndGet());    // also after the caller gave up waiting
+        try {
+            return p.done.get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            return "ERROR:vote not confirmed in time – check before re‑voting";
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return "ERROR:interrupted";
+        } catch (ExecutionException e) {
+            return "ERROR:" + e.getCause().getMessage();
+        }
+    }
+
+    /** ballots waiting for the flusher */
+    int queued() { return queue.size(); }
+
+    /** ballots of this election still queued or being written */
+    boolean pending(int election) {
+        AtomicInteger n = open.get(election);
+        return n != null && n.get() > 0;
+    }
+
+    /* ========================================================= */
+
+    private void flushLoop() {
+        List<Pending> batch = new ArrayList<>();
+        while (true) {
+            try {
+                batch.clear();
+                Pending first = queue.take();
+                batch.add(first);
+                int votes = first.votes.size();
+
+                long deadline = System.nanoTime() + flushNanos;
+                while (votes < batchMax) {
+                    long left = deadline - System.nanoTime();
+                    Pending p = left > 0 ? queue.poll(left, TimeUnit.NANOSECONDS) : queue.poll();
+                    if (p == null) break;
+                    batch.add(p);
+                    votes += p.votes.size();
+                }
+                flush(batch);
+            } catch (InterruptedException e) {
+                return;
+            } catch (Throwable t) {
+                t.printStackTrace();
+                for (Pending p : batch) p.done.complete("ERROR:" + t.getMessage());
+            }
+        }
+    }
+
+    private void flush(List<Pending> batch) {
+        String[] answers = new String[batch.size()];
+        try {
+            Connection c = connection();
+            c.setAutoCommit(false);
+            try {
+                Set<String> taken = existing(c, batch);
+                List<Vote> rows = new ArrayList<>();
+                for (int i = 0; i < batch.size(); i++) {
+                    List<Vote> b = batch.get(i).votes;
+                    boolean clash = false;
+                    for (Vote v : b) clash |= taken.contains(v.key());
+                    if (clash) { answers[i] = DUPLICATE; continue; }
+                    for (Vote v : b) taken.add(v.key());      // later ballots in this batch clash with it
+                    rows.addAll(b);
+                    answers[i] = OK;
+                }
+
+                try {
+                    insert(c, rows);
+                } catch (SQLException ex) {
+                    if (!isRejected(ex)) throw ex;
+                    c.rollback();
+                    replayOneByOne(c, batch, answers);
+                }
+
+                List<Vote> stored = new ArrayList<>();
+                for (int i = 0; i < batch.size(); i++) if (OK.equals(answers[i])) stored.addAll(batch.get(i).votes);
+                tallies.commit(c, stored);
+            } catch (SQLException ex) {
+                try { c.rollback(); } catch (SQLException ignored) { }
+                throw ex;
+            } finally {
+                try { c.setAutoCommit(true); } catch (SQLException ignored) { }
+            }
+        } catch (SQLException ex) {
+            dropConnection();
+            Arrays.fill(answers, "ERROR:" + ex.getMessage());
+        }
+        for (int i = 0; i < batch.size(); i++) batch.get(i).done.complete(answers[i]);
+    }
+
+    /** (election|voter|seat) keys of this batch that are already in Votes */
+    private static Set<String> existing(Connection c, List<Pending> batch) throws SQLException {
+        List<Vote> all = new ArrayList<>();
+        for (Pending p : batch) all.addAll(p.votes);
+
+        StringBuilder sql = new StringBuilder(
+                "SELECT ElectionID,VoterCNIC,Seat FROM Votes WHERE (ElectionID,VoterCNIC,Seat) IN (");
+        for (int i = 0; i < all.size(); i++) sql.append(i == 0 ? "(?,?,?)" : ",(?,?,?)");
+        sql.append(')');
+
+        Set<String> taken = new HashSet<>();
+        try (PreparedStatement ps = c.prepareStatement(sql.toString())) {
+            int k = 1;
+            for (Vote v : all) {
+                ps.setInt(k++, v.election()); ps.setString(k++, v.voter()); ps.setString(k++, v.seat());
+            }
+            ResultSet rs = ps.executeQuery();
+            while (rs.next()) taken.add(rs.getInt(1) + "|" + rs.getString(2) + "|" + rs.getString(3));
+        }
+        return taken;
+    }
+
+    static void insert(Connection c, List<Vote> rows) throws SQLException {
+        if (rows.isEmpty()) return;
+        StringBuilder sql = new StringBuilder(
+                "INSERT INTO Votes (ElectionID,VoterCNIC,Seat,CandidateCNIC) VALUES ");
+        for (int i = 0; i < rows.size(); i++) sql.append(i == 0 ? "(?,?,?,?)" : ",(?,?,?,?)");
+
+        try (PreparedStatement ps = c.prepareStatement(sql.toString())) {
+            int k = 1;
+            for (Vote v : rows) {
+                ps.setInt(k++, v.election());  ps.setString(k++, v.voter());
+                ps.setString(k++, v.seat());   ps.setString(k++, v.candidate());
+            }
+            ps.executeUpdate();
+        }
+    }
+
+    /** slow path after a key violation: each ballot under its own savepoint */
+    private static void replayOneByOne(Connection c, List<Pending> batch, String[] answers) throws SQLException {
+        for (int i = 0; i < batch.size(); i++) {
+            if (!OK.equals(answers[i])) continue;
+            Savepoint sp = c.setSavepoint();
+            try {
+                insert(c, batch.get(i).votes);
+                c.releaseSavepoint(sp);
+            } catch (SQLException ex) {
+                if (!isRejected(ex)) throw ex;
+                c.rollback(sp);
+                answers[i] = isDuplicate(ex) ? DUPLICATE : "ERROR:Vote rejected – " + ex.getMessage();
+            }
+        }
+    }
+
+    static boolean isDuplicate(SQLException ex) {
+        return ex.getMessage() != null && ex.getMessage().contains("uniq_vote");
+    }
+
+    /** the rows broke a key (unique or foreign) – the ballot is at fault, not the connection */
+    static boolean isRejected(SQLException ex) {
+        return ex instanceof SQLIntegrityConstraintViolationException || isDuplicate(ex);
+    }
+
+    private Connection connection() throws SQLException {
+        if (cn == null || cn.isClosed()) cn = pool.dedicated();
+        return cn;
+    }
+
+    private void dropConnection() {
+        if (cn != null) try { cn.close(); } catch (SQLException ignored) { }
+        cn = null;
+    }
+}
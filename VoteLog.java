@@ -0,0 +1,460 @@
+package server;
+
+import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32C;
+
+/**
+ * Optional write‑ahead log for votes (-Dems.wal.dir=…).
+ * A ballot is appended to a memory‑mapped segment and acknowledged once the page is
+ * forced to disk; a drainer thread applies the log to Votes afterwards, so booths
+ * keep voting through a short MySQL stall or fail‑over.
+ *
+ *   dir/votes-00000001.wal   fixed‑size segments, zero filled, starting with int32 MAGIC | int32 version
+ *   dir/checkpoint           "seq pos" – everything before it is in MySQL
+ *   dir/rejected             ballots MySQL refused after they were acknowledged, one per line:
+ *                            time TAB election TAB voter TAB seat=candidate,… TAB reason
+ *
+ *   record : int32 len | int32 crc32c | int32 election | str voter | u16 n | (str seat | str candidate)×n
+ *   str    : u16 len, UTF‑8          (len = 0 marks the end of a segment)
+ *
+ * A segment without the header is from the first version of the log (one vote per
+ * record: election | voter | seat | candidate); it is still replayed, but new
+ * records always go to a segment with the current header.
+ *
+ * One record holds one voter's whole ballot, so a torn write can never leave half of it.
+ *
+ * castBallot checks voter and candidates before a ballot is appended, so MySQL should
+ * never refuse one; if it does, the whole ballot is rolled back and written to
+ * dir/rejected for reconciliation – never half stored, never silently lost.
+ *
+ * Replay after a crash starts at the checkpoint; a ballot already in Votes is skipped
+ * (uniq_vote), so applying a record twice is harmless and is not counted twice.
+ * Votes not yet drained are kept in memory to refuse a second vote before it hits MySQL.
+ */
+final class VoteLog {
+
+    private static final String CHECKPOINT  = "checkpoint";
+    private static final String REJECTED    = "rejected";
+    private static final int    HEADER      = 8;                // record: len + crc
+    private static final int    MAGIC       = 0x454D5357;       // "EMSW"
+    private static final int    VERSION     = 2;
+    private static final int    SEG_HEADER  = 8;                // segment: MAGIC + version
+    private static final int    DRAIN_BATCH = 500;
+    private static final long   DRAIN_IDLE_MS = 2, RETRY_MS = 500;
+
+    private final Path    dir;
+    private final int     segmentBytes;
+    private final DbPool  pool;
+    private final Tallies tallies;
+
+    /** keys (election|voter|seat) appended but not yet drained */
+    private final Set<String> pending = ConcurrentHashMap.newKeySet();
+    private final Map<Integer, AtomicInteger> perElection = new ConcurrentHashMap<>();   // the same, counted
+
+    /* writer – guarded by this */
+    private long             seq;
+    private MappedByteBuffer map;
+    private volatile long    written;                       // seq << 32 | pos after the last append
+
+    /* everything before this mark is on disk */
+    private final AtomicLong durable   = new AtomicLong();
+    private final Object     forceLock = new Object();
+
+    /* drainer thread only */
+    private long       drainSeq;
+    private int        drainPos;
+    private Connection cn;
+
+    VoteLog(Path dir, int segmentBytes, DbPool pool, Tallies tallies) throws IOException {
+        this.dir          = dir;
+        this.segmentBytes = segmentBytes;
+        this.pool         = pool;
+        this.tallies      = tallies;
+        Files.createDirectories(dir);
+        recover();
+
+        Thread t = new Thread(this::drainLoop, "ems-wal-drainer");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    /** appends the ballot (votes of one voter in one election) and returns once it is
+        on disk: OK, DUPLICATE or ERROR:…
+        Votes already in MySQL are the caller's business (VotedSet) – this only
+        refuses a second copy of a vote that is still in the log. */
+    String submit(List<VoteIngest.Vote> ballot) {
+        for (int i = 0; i < ballot.size(); i++) {
+            if (!hold(ballot.get(i))) {
+                for (int j = 0; j < i; j++) release(ballot.get(j));
+                return VoteIngest.DUPLICATE;
+            }
+        }
+        try {
+            byte[] rec = encode(ballot);
+            MappedByteBuffer m;
+            long mark;
+            synchronized (this) {
+                if (map.remaining() < rec.length + 4) roll();       // keep room for the end marker
+                map.put(rec);
+                m    = map;
+                mark = seq << 32 | map.position();
+                written = mark;
+            }
+            sync(m, mark);
+            return VoteIngest.OK;
+        } catch (IOException | UncheckedIOException e) {
+            for (VoteIngest.Vote v : ballot) release(v);
+            return "ERROR:vote log – " + e.getMessage();
+        }
+    }
+
+    int backlog() { return pending.size(); }
+
+    /** any vote of this election still waiting for MySQL? */
+    boolean pending(int election) {
+        AtomicInteger n = perElection.get(election);
+        return n != null && n.get() > 0;
+    }
+
+    private boolean hold(VoteIngest.Vote v) {
+        if (!pending.add(v.key())) return false;
+        perElection.computeIfAbsent(v.election(), e -> new AtomicInteger()).incrementAndGet();
+        return true;
+    }
+
+    private void release(VoteIngest.Vote v) {
+        if (pending.remove(v.key())) perElection.get(v.election()).decrementAndGet();
+    }
+
+    /* ========================================================= */
+    /*  writer                                                   */
+    /* ========================================================= */
+
+    /** group force: whoever gets the lock forces everything written so far */
+    private void sync(MappedByteBuffer m, long mark) {
+        if (durable.get() >= mark) return;
+        synchronized (forceLock) {
+            if (durable.get() >= mark) return;
+            long upTo = written;
+            if (upTo >>> 32 != mark >>> 32) upTo = mark;            // rolled meanwhile
+            m.force();
+            durable.accumulateAndGet(upTo, Math::max);
+        }
+    }
+
+    /** caller holds this */
+    private void roll() throws IOException {
+        map.force();
+        durable.accumulateAndGet(seq << 32 | map.position(), Math::max);
+        map = newSegment(++seq);
+    }
+
+    /** maps segment s and writes the current header – records follow it */
+    private MappedByteBuffer newSegment(long s) throws IOException {
+        MappedByteBuffer m = mapSegment(s);
+        m.putInt(0, MAGIC).putInt(4, VERSION);
+        m.position(SEG_HEADER);
+        return m;
+    }
+
+    /** format version of a segment: 0 = never written, 1 = before the header existed */
+    private static int version(java.nio.ByteBuffer m) throws IOException {
+        int first = m.getInt(0);
+        if (first != MAGIC) return first == 0 ? 0 : 1;
+        int v = m.getInt(4);
+        if (v < 2 || v > VERSION) throw new IOException("vote log segment of unknown version " + v);
+        return v;
+    }
+
+    private static int start(int version) { return version >= 2 ? SEG_HEADER : 0; }
+
+    private MappedByteBuffer mapSegment(long s) throws IOException {
+        try (FileChannel ch = FileChannel.open(segment(s), StandardOpenOption.CREATE,
+                                               StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return ch.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+        }
+    }
+
+    private static byte[] encode(List<VoteIngest.Vote> ballot) {
+        ByteArrayOutputStream buf = new ByteArrayOutputStream(32 + 32 * ballot.size());
+        DataOutputStream out = new DataOutputStream(buf);
+        try {
+            VoteIngest.Vote first = ballot.get(0);
+            out.writeInt(0);
+            out.writeInt(0);
+            out.writeInt(first.election());
+            writeStr(out, first.voter());
+            out.writeShort(ballot.size());
+            for (VoteIngest.Vote v : ballot) {
+                writeStr(out, v.seat());
+                writeStr(out, v.candidate());
+            }
+        } catch (IOException e) { throw new UncheckedIOException(e); }   // cannot happen on a byte array
+
+        byte[] rec = buf.toByteArray();
+        CRC32C crc = new CRC32C();
+        crc.update(rec, HEADER, rec.length - HEADER);
+        java.nio.ByteBuffer.wrap(rec).putInt(rec.length - HEADER).putInt((int) crc.getValue());
+        return rec;
+    }
+
+    private static void writeStr(DataOutputStream out, String s) throws IOException {
+        byte[] b = s.getBytes(StandardCharsets.UTF_8);
+        out.writeShort(b.length);
+        out.write(b);
+    }
+
+    /* ========================================================= */
+    /*  recovery                                                 */
+    /* ========================================================= */
+
+    private void recover() throws IOException {
+        long[] ck = readCheckpoint();
+        drainSeq = ck[0];
+        drainPos = (int) ck[1];
+
+        List<Long> segs = new ArrayList<>();
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir, "votes-*.wal")) {
+            for (Path p : ds) {
+                String n = p.getFileName().toString();
+                segs.add(Long.parseLong(n.substring(6, n.length() - 4)));
+            }
+        }
+        Collections.sort(segs);
+
+        for (long s : segs) if (s < drainSeq) Files.deleteIfExists(segment(s));
+        segs.removeIf(s -> s < drainSeq);
+        if (segs.isEmpty()) segs.add(drainSeq);
+
+        /* re‑learn undrained keys, find the end of the newest segment */
+        int end = 0, ver = 0;
+        for (long s : segs) {
+            MappedByteBuffer m = mapSegment(s);
+            ver = version(m);
+            end = start(ver);
+            m.position(s == drainSeq ? Math.max(drainPos, end) : end);
+            for (List<VoteIngest.Vote> b; (b = read(m, ver)) != null; ) {
+                for (VoteIngest.Vote v : b) hold(v);
+                end = m.position();
+            }
+            if (s == drainSeq) end = Math.max(end, drainPos);
+        }
+
+        seq = segs.get(segs.size() - 1);
+        map = mapSegment(seq);
+        for (int i = end; i < segmentBytes; i++) if (map.get(i) != 0) map.put(i, (byte) 0);   // torn tail
+        if (ver == 0) {                                           // fresh segment – give it the header
+            map.force();
+            map = newSegment(seq);
+            end = SEG_HEADER;
+        } else if (ver < VERSION) {                               // old format – drained as it is, append elsewhere
+            map.force();
+            map = newSegment(++seq);
+            end = SEG_HEADER;
+        }
+        map.force();
+        map.position(end);
+        written = seq << 32 | end;
+        durable.set(written);
+
+        if (!pending.isEmpty())
+            System.out.println("🔁 vote log: " + pending.size() + " votes to replay into MySQL");
+    }
+
+    /** ballot in the next valid record at m.position(), or null at the end / a torn record;
+        a version 1 record is a ballot of one vote */
+    private static List<VoteIngest.Vote> read(java.nio.ByteBuffer m, int version) {
+        int at = m.position();
+        if (m.remaining() < HEADER) return null;
+        int len = m.getInt(at), crc = m.getInt(at + 4);
+        if (len <= 0 || len > m.remaining() - HEADER) return null;
+
+        byte[] body = new byte[len];
+        m.get(at + HEADER, body);
+        CRC32C c = new CRC32C();
+        c.update(body);
+        if ((int) c.getValue() != crc) return null;
+
+        try {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(body));
+            int    election = in.readInt();
+            String voter    = readStr(in);
+            List<VoteIngest.Vote> ballot = new ArrayList<>();
+            if (version == 1) ballot.add(new VoteIngest.Vote(election, voter, readStr(in), readStr(in)));
+            else for (int n = in.readUnsignedShort(); n > 0; n--)
+                ballot.add(new VoteIngest.Vote(election, voter, readStr(in), readStr(in)));
+            m.position(at + HEADER + len);
+            return ballot;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static String readStr(DataInputStream in) throws IOException {
+        byte[] b = new byte[in.readUnsignedShort()];
+        in.readFully(b);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+
+    private long[] readCheckpoint() throws IOException {
+        Path p = dir.resolve(CHECKPOINT);
+        if (!Files.exists(p)) return new long[]{1, 0};
+        String[] f = Files.readString(p).trim().split(" ");
+        return new long[]{Long.parseLong(f[0]), Long.parseLong(f[1])};
+    }
+
+    /** not forced on purpose: an older checkpoint only means replaying a few rows again */
+    private void writeCheckpoint(long s, int pos) throws IOException {
+        Path tmp = dir.resolve(CHECKPOINT + ".tmp");
+        Files.writeString(tmp, s + " " + pos);
+        Files.move(tmp, dir.resolve(CHECKPOINT),
+                   StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private Path segment(long s) { return dir.resolve(String.format("votes-%08d.wal", s)); }
+
+    /* ========================================================= */
+    /*  drainer                                                  */
+    /* ========================================================= */
+
+    private void drainLoop() {
+        MappedByteBuffer m = null;
+        long mSeq = -1;
+        int  mVer = 0;
+        List<List<VoteIngest.Vote>> batch = new ArrayList<>();
+
+        while (true) {
+            try {
+                if (mSeq != drainSeq) { m = mapSegment(drainSeq); mSeq = drainSeq; mVer = 0; }
+                if (mVer == 0) {                                          // header not seen yet
+                    mVer = version(m);
+                    if (mVer == 0 && durable.get() >>> 32 == drainSeq) { Thread.sleep(DRAIN_IDLE_MS); continue; }
+                    drainPos = Math.max(drainPos, start(mVer));
+                }
+
+                long limit = durable.get();
+                int  upTo  = limit >>> 32 == drainSeq ? (int) limit : segmentBytes;
+                java.nio.ByteBuffer view = m.duplicate().limit(upTo).position(drainPos);
+
+                batch.clear();
+                int votes = 0;
+                for (List<VoteIngest.Vote> b; votes < DRAIN_BATCH && (b = read(view, mVer)) != null; votes += b.size()) batch.add(b);
+
+                if (batch.isEmpty()) {
+                    if (limit >>> 32 > drainSeq) {                        // writer has moved on
+                        Files.deleteIfExists(segment(drainSeq));
+                        drainSeq++;
+                        drainPos = 0;
+                        writeCheckpoint(drainSeq, 0);
+                    } else {
+                        Thread.sleep(DRAIN_IDLE_MS);
+                    }
+                    continue;
+                }
+
+                apply(batch);
+                drainPos = view.position();
+                writeCheckpoint(drainSeq, drainPos);
+                for (List<VoteIngest.Vote> b : batch) for (VoteIngest.Vote v : b) release(v);
+
+            } catch (InterruptedException e) {
+                return;
+            } catch (SQLException e) {
+                System.out.println("⚠️ vote log drain: " + e.getMessage() + " – " + pending.size() + " waiting");
+                dropConnection();
+                try { Thread.sleep(RETRY_MS); } catch (InterruptedException ie) { return; }
+            } catch (Throwable t) {
+                t.printStackTrace();
+                try { Thread.sleep(RETRY_MS); } catch (InterruptedException ie) { return; }
+            }
+        }
+    }
+
+    /** one transaction for all ballots; if a key breaks, ballot by ballot under savepoints:
+        a ballot already in Votes (replay) is skipped, any other refused ballot is
+        rolled back whole and written to dir/rejected */
+    private void apply(List<List<VoteIngest.Vote>> ballots) throws SQLException, IOException {
+        Connection c = connection();
+        c.setAutoCommit(false);
+        try {
+            List<VoteIngest.Vote> stored = new ArrayList<>();
+            List<String>          rejected = new ArrayList<>();
+            for (List<VoteIngest.Vote> b : ballots) stored.addAll(b);
+            try {
+                VoteIngest.insert(c, stored);
+            } catch (SQLException ex) {
+                if (!VoteIngest.isRejected(ex)) throw ex;
+                c.rollback();
+                stored.clear();
+                for (List<VoteIngest.Vote> b : ballots) {
+                    Savepoint sp = c.setSavepoint();
+                    try {
+                        VoteIngest.insert(c, b);
+                        c.releaseSavepoint(sp);
+                        stored.addAll(b);
+                    } catch (SQLException bad) {
+                        if (!VoteIngest.isRejected(bad)) throw bad;
+                        c.rollback(sp);
+                        if (!VoteIngest.isDuplicate(bad) || !applied(c, b)) rejected.add(rejectLine(b, bad));
+                    }
+                }
+            }
+            tallies.commit(c, stored);
+            /* after the commit: a crash in between re‑evaluates the ballot on replay */
+            if (!rejected.isEmpty()) reject(rejected);
+        } catch (SQLException ex) {
+            try { c.rollback(); } catch (SQLException ignored) { }
+            throw ex;
+        } finally {
+            try { c.setAutoCommit(true); } catch (SQLException ignored) { }
+        }
+    }
+
+    /** is every vote of ballot b already in Votes, as cast? (a replayed record) */
+    private static boolean applied(Connection c, List<VoteIngest.Vote> b) throws SQLException {
+        StringBuilder sql = new StringBuilder("SELECT COUNT(*) FROM Votes WHERE ElectionID=? AND VoterCNIC=? AND (Seat,CandidateCNIC) IN (");
+        for (int i = 0; i < b.size(); i++) sql.append(i == 0 ? "(?,?)" : ",(?,?)");
+        sql.append(')');
+        try (PreparedStatement ps = c.prepareStatement(sql.toString())) {
+            int k = 1;
+            ps.setInt(k++, b.get(0).election());
+            ps.setString(k++, b.get(0).voter());
+            for (VoteIngest.Vote v : b) { ps.setString(k++, v.seat()); ps.setString(k++, v.candidate()); }
+            ResultSet rs = ps.executeQuery();
+            return rs.next() && rs.getInt(1) == b.size();
+        }
+    }
+
+    private static String rejectLine(List<VoteIngest.Vote> b, SQLException why) {
+        StringJoiner votes = new StringJoiner(",");
+        for (VoteIngest.Vote v : b) votes.add(v.seat() + "=" + v.candidate());
+        return java.time.Instant.now() + "\t" + b.get(0).election() + "\t" + b.get(0).voter() + "\t" + votes
+               + "\t" + String.valueOf(why.getMessage()).replace('\t', ' ').replace('\n', ' ') + "\n";
+    }
+
+    private void reject(List<String> lines) throws IOException {
+        Files.writeString(dir.resolve(REJECTED), String.join("", lines), StandardCharsets.UTF_8,
+                          StandardOpenOption.CREATE, StandardOpenOption.APPEND, StandardOpenOption.DSYNC);
+        System.out.println("❌ vote log: " + lines.size() + " acknowledged ballot(s) refused by MySQL – see "
+                           + dir.resolve(REJECTED));
+    }
+
+    private Connection connection() throws SQLException {
+        if (cn == null || cn.isClosed()) cn = pool.dedicated();
+        return cn;
+    }
+
+    private void dropConnection() {
+        if (cn != null) try { cn.close(); } catch (SQLException ignored) { }
+        cn = null;
+    }
+}
@@ -0,0 +1,144 @@
+package server;
+
+import java.sql.*;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Who has already voted, per election and seat, so repeated ballots are refused
+ * without a round trip to MySQL.  Voters are CNIC keys (Cnic.key) in a primitive
+ * open‑addressing hash set – about 16 bytes per vote, no boxing.
+ *
+ * An election's set is built from Votes the first time it is needed (or at start‑up
+ * through preload) and then kept current by castVote: add() before the insert,
+ * remove() if the insert fails.  Only one election is kept – votes go to the active one.
+ */
+final class VotedSet {
+
+    private final DbPool pool;
+    private final Map<Integer, Map<String, LongSet>> elections = new ConcurrentHashMap<>();
+
+    VotedSet(DbPool pool) { this.pool = pool; }
+
+    /** builds the set of this election now rather than on its first vote */
+    void preload(int election) throws SQLException { seats(election); }
+
+    /** false if the voter already voted on this seat; otherwise records it */
+    boolean add(int election, String seat, long voter) throws SQLException {
+        return seats(election).computeIfAbsent(seat, s -> new LongSet()).add(voter);
+    }
+
+    /** undo add() after the vote could not be stored */
+    void remove(int election, String seat, long voter) {
+        Map<String, LongSet> m = elections.get(election);
+        LongSet s = m == null ? null : m.get(seat);
+        if (s != null) s.remove(voter);
+    }
+
+    /** seat null = any seat */
+    boolean contains(int election, String seat, long voter) throws SQLException {
+        Map<String, LongSet> m = seats(election);
+        if (seat != null) {
+            LongSet s = m.get(seat);
+            return s != null && s.contains(voter);
+        }
+        for (LongSet s : m.values()) if (s.contains(voter)) return true;
+        return false;
+    }
+
+    /* ========================================================= */
+
+    private Map<String, LongSet> seats(int election) throws SQLException {
+        Map<String, LongSet> m = elections.get(election);
+        if (m != null) return m;
+        synchronized (this) {
+            m = elections.get(election);
+            if (m == null) {
+                m = load(election);
+                elections.clear();                           // an older election is over
+                elections.put(election, m);
+            }
+            return m;
+        }
+    }
+
+    private Map<String, LongSet> load(int election) throws SQLException {
+        Map<String, LongSet> m = new ConcurrentHashMap<>();
+        long t0 = System.currentTimeMillis();
+        int  n  = 0;
+        try (Connection c = pool.borrow();
+             PreparedStatement ps = c.prepareStatement("SELECT Seat, VoterCNIC FROM Votes WHERE ElectionID=?",
+                                                       ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            ps.setFetchSize(Integer.MIN_VALUE);                  // Connector/J: stream rows instead of buffering
+            ps.setInt(1, election);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    long k = Cnic.key(rs.getString(2));
+                    if (k < 0) continue;
+                    m.computeIfAbsent(rs.getString(1).trim().toUpperCase(), s -> new LongSet()).add(k);
+                    n++;
+                }
+            }
+        }
+        System.out.println("🗳️ voted set of election " + election + ": " + n + " votes in "
+                           + (System.currentTimeMillis() - t0) + " ms");
+        return m;
+    }
+
+    /** linear‑probing set of non‑negative longs; slot 0 means empty, so keys are stored +1 */
+    static final class LongSet {
+        private long[] slots = new long[64];
+        private int    size;
+
+        synchronized boolean add(long key) {
+            long k = key + 1;
+            int  i = find(slots, k);
+            if (slots[i] == k) return false;
+            slots[i] = k;
+            if (++size * 2 > slots.length) grow();
+            return true;
+        }
+
+        synchronized boolean contains(long key) {
+            long k = key + 1;
+            return slots[find(slots, k)] == k;
+        }
+
+        synchronized void remove(long key) {
+            long k = key + 1;
+            int  i = find(slots, k);
+            if (slots[i] != k) return;
+            slots[i] = 0;
+            size--;
+            /* shift the rest of the probe run back so lookups do not stop early */
+            int mask = slots.length - 1;
+            for (int j = (i + 1) & mask; slots[j] != 0; j = (j + 1) & mask) {
+                long moved = slots[j];
+                slots[j] = 0;
+                slots[find(slots, moved)] = moved;
+            }
+        }
+
+        synchronized int size() { return size; }
+
+        private void grow() {
+            long[] next = new long[slots.length * 2];
+            for (long k : slots) if (k != 0) next[find(next, k)] = k;
+            slots = next;
+        }
+
+        /** slot holding k, or the empty slot where it would go */
+        private static int find(long[] t, long k) {
+            int mask = t.length - 1;
+            int i = (int) (mix(k) & mask);
+            while (t[i] != 0 && t[i] != k) i = (i + 1) & mask;
+            return i;
+        }
+
+        private static long mix(long k) {
+            k ^= k >>> 33;
+            k *= 0xff51afd7ed558ccdL;
+            return k ^ (k >>> 33);
+        }
+    }
+}
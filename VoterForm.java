@@ -5,11 +5,6 @@
 package election_management_system;
 
 import java.awt.BorderLayout;
-import java.io.BufferedReader;
-import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.PrintWriter;
-import java.net.Socket;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.Date;
@@ -17,6 +12,7 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.swing.JLabel;
 import javax.swing.SwingConstants;
+import javax.swing.SwingUtilities;
 
 /**
  *
@@ -25,18 +21,6 @@ import javax.swing.SwingConstants;
 public class VoterForm extends javax.swing.JFrame {
     private JLabel countdownLabel;
     private TimerUtil timerUtil;
-    private String sendToServer(String request) {
-    try (Socket socket = new Socket("localhost", 12346);
-         PrintWriter out = new PrintWriter(socket.getOutputStream(), true);
-         BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()))) {
-
-        out.println(request);
-        return in.readLine();
-    } catch (IOException e) {
-        e.printStackTrace();
-        return "ERROR:" + e.getMessage();
-    }
-}
     
     
 public VoterForm() throws ParseException {
@@ -48,20 +32,24 @@ public VoterForm() throws ParseException {
     Timer.setForeground(new java.awt.Color(255, 255, 255)); // white text
 
 
-    String status = sendToServer("getElectionStatus;");
-    if (status.equals("Started")) {
-        String stopTimeStr = sendToServer("selectElectionStopTime;");
-        if (!stopTimeStr.equals("NONE") && !stopTimeStr.startsWith("ERROR")) {
-            SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
-            Date stopTime = sdf.parse(stopTimeStr);
-            timerUtil = new TimerUtil(Timer); // Use GUI Timer label
-            timerUtil.startCountdown(stopTime);
-        } else {
-            Timer.setText("⏳ Waiting for stop time...");
-        }
-    } else {
-        Timer.setText("⏳ Voting has not started yet.");
+    timerUtil = new TimerUtil(Timer); // Use GUI Timer label
+    /* status and stop time come from the server's push feed – every change, not just the first */
+    ServerClient.watchElection((status, stop) -> SwingUtilities.invokeLater(() -> showElection(status, stop)));
+}
+
+private void showElection(String status, String stopTimeStr) {
+    timerUtil.stop();
+    if (!"Started".equals(status)) {
+        Timer.setText("Finished".equals(status) ? "⏹️ Voting time is over!" : "⏳ Voting has not started yet.");
+        return;
+    }
+    Date stopTime = null;
+    if (stopTimeStr != null) {
+        try { stopTime = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").parse(stopTimeStr); }
+        catch (ParseException ignored) { }
     }
+    if (stopTime == null) Timer.setText("⏳ Waiting for stop time...");
+    else timerUtil.startCountdown(stopTime);
 }
 
 
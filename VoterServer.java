@@ -2,8 +2,19 @@ package server;
 
 import java.io.*;
 import java.net.*;
+import java.nio.charset.StandardCharsets;
 import java.sql.*;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Socket‑based EMS server.
@@ -17,88 +28,742 @@ public class VoterServer {
     private static final String DB   = "jdbc:mysql://localhost:3306/EMS?serverTimezone=Asia/Karachi";
     private static final String USER = "root";
     private static final String PASS = "Abdu.llah04";
+
+    /* acceptor – override with -Dems.engine=nio, -Dems.executor=pool etc. */
+    private static final String ENGINE       = System.getProperty("ems.engine", "blocking");  // blocking | nio
+    private static final int    NIO_LOOPS    = Integer.getInteger("ems.nioLoops",
+                                                   Math.max(2, Runtime.getRuntime().availableProcessors() / 2));
+    private static final String EXECUTOR     = System.getProperty("ems.executor", "virtual"); // virtual | pool
+    private static final int    POOL_THREADS = Integer.getInteger("ems.poolThreads", 64);
+    private static final int    MAX_INFLIGHT = Integer.getInteger("ems.maxInFlight", 2000);
+    private static final int    BACKLOG      = Integer.getInteger("ems.backlog", 512);
+    private static final int    IDLE_TIMEOUT_MS = Integer.getInteger("ems.idleTimeoutMs", 60_000);
+    private static final long   KEEPALIVE_MS    = Long.getLong("ems.keepAliveMs", 300_000);   // heartbeats alone, this long
+
+    /* JDBC pool – keep DB_MAX_POOL well under MySQL max_connections */
+    private static final int    DB_MIN_POOL   = Integer.getInteger("ems.db.minPool", 4);
+    private static final int    DB_MAX_POOL   = Integer.getInteger("ems.db.maxPool", 32);
+    private static final long   DB_BORROW_MS  = Long.getLong("ems.db.borrowTimeoutMs", 5_000);
+    private static final long   DB_LEAK_MS    = Long.getLong("ems.db.leakMs", 30_000);
+    private static final boolean DB_LEAK_TRACE = Boolean.getBoolean("ems.db.leakTrace");
+
+    /* vote group commit – a batch closes at VOTE_BATCH votes or after VOTE_FLUSH_MS */
+    private static final int    VOTE_BATCH      = Integer.getInteger("ems.vote.batchMax", 256);
+    private static final long   VOTE_FLUSH_MS   = Long.getLong("ems.vote.flushMs", 2);
+    private static final int    VOTE_QUEUE      = Integer.getInteger("ems.vote.queueMax", 10_000);
+    private static final long   VOTE_TIMEOUT_MS = Long.getLong("ems.vote.timeoutMs", 10_000);
+
+    /* Election_Time is cached; this reload only catches edits made outside the server */
+    private static final long   ELECTION_REFRESH_MS = Long.getLong("ems.election.refreshMs", 60_000);
+
+    /* final results are counted seat by seat on this many connections at once */
+    private static final int    RESULT_THREADS = Integer.getInteger("ems.results.threads", Math.max(2, DB_MAX_POOL / 4));
+
+    /* finished‑election results kept in memory, LRU beyond this size */
+    private static final int    CACHE_MAX_KB = Integer.getInteger("ems.cache.maxKb", 16 * 1024);
+
+    /* live vote counts – checkpointed so a restart only counts newer Votes rows */
+    private static final String TALLY_FILE          = System.getProperty("ems.tally.file", "tallies.ckpt");
+    private static final long   TALLY_CHECKPOINT_MS = Long.getLong("ems.tally.checkpointMs", 30_000);
+
+    /* getNationalResults – seats per page, and how long one count is reused while paging */
+    private static final int    NATIONAL_PAGE       = Integer.getInteger("ems.national.pageSize", 250);
+    private static final long   NATIONAL_REFRESH_MS = Long.getLong("ems.national.refreshMs", 5_000);
+
+    /* subscribe – tally events at most this often, keep‑alive pings, events queued per slow subscriber */
+    private static final long   PUSH_TALLY_MS     = Long.getLong("ems.push.tallyMs", 1_000);
+    private static final long   PUSH_HEARTBEAT_MS = Long.getLong("ems.push.heartbeatMs", 30_000);
+    static final int            PUSH_QUEUE        = Integer.getInteger("ems.push.queueMax", 256);
+
+    /* getAllVoters / getAllCandidates / getAllParties – rows per page unless asked, and the most allowed;
+       a request without limit or cursor gets the old unpaged reply, refused past UNPAGED_MAX rows */
+    private static final int    PAGE_SIZE   = Integer.getInteger("ems.page.size", 500);
+    private static final int    PAGE_MAX    = Integer.getInteger("ems.page.max", 5_000);
+    private static final int    UNPAGED_MAX = Integer.getInteger("ems.page.unpagedMax", 50_000);
+
+    /* exportVoters / exportCandidates – rows per CHUNK line, exports running at once */
+    private static final int    EXPORT_CHUNK = Integer.getInteger("ems.export.chunkRows", 1_000);
+    private static final int    EXPORT_MAX   = Integer.getInteger("ems.export.max", 2);
+
+    /* access log – one JSON line per request, written off the request path; empty file = off */
+    private static final String LOG_FILE      = System.getProperty("ems.log.file", "access.log");
+    private static final double LOG_SAMPLE    = Double.parseDouble(System.getProperty("ems.log.sample", "1.0"));
+    private static final int    LOG_PAYLOAD   = Integer.getInteger("ems.log.payloadMax", 200);
+    private static final int    LOG_RING      = Integer.getInteger("ems.log.ring", 65_536);
+    private static final int    LOG_MAX_MB    = Integer.getInteger("ems.log.maxMb", 64);
+    private static final int    LOG_KEEP      = Integer.getInteger("ems.log.keep", 5);
+
+    /* per‑command latency histograms – the "stats" command; a file gets a copy every dumpMs, empty = off */
+    private static final String STATS_FILE    = System.getProperty("ems.stats.file", "");
+    private static final long   STATS_DUMP_MS = Long.getLong("ems.stats.dumpMs", 60_000);
+
+    /* token buckets for login, castVote, castBallot, checkCNIC, updatePassword –
+       per client address and per CNIC; perSec 0 = no limit */
+    private static final double LIMIT_IP_RATE    = Double.parseDouble(System.getProperty("ems.limit.ip.perSec", "20"));
+    private static final int    LIMIT_IP_BURST   = Integer.getInteger("ems.limit.ip.burst", 100);
+    private static final double LIMIT_CNIC_RATE  = Double.parseDouble(System.getProperty("ems.limit.cnic.perSec", "0.2"));
+    private static final int    LIMIT_CNIC_BURST = Integer.getInteger("ems.limit.cnic.burst", 10);
+    private static final int    LIMIT_MAX_KEYS   = Integer.getInteger("ems.limit.maxKeys", 100_000);
+
+    /* Prometheus endpoint – GET http://<bind>:<port>/metrics; port 0 = off */
+    private static final int    METRICS_PORT = Integer.getInteger("ems.metrics.port", 9464);
+    private static final String METRICS_BIND = System.getProperty("ems.metrics.bind", "127.0.0.1");
+
+    /* vote write‑ahead log – off unless a directory is given */
+    private static final String WAL_DIR        = System.getProperty("ems.wal.dir", "");
+    private static final int    WAL_SEGMENT_MB = Integer.getInteger("ems.wal.segmentMb", 64);
     /* ──────────────────────────── */
 
+    static final AccessLog LOG = new AccessLog(LOG_FILE.isBlank() ? null : java.nio.file.Path.of(LOG_FILE),
+                                               LOG_RING, LOG_SAMPLE, LOG_PAYLOAD, (long) LOG_MAX_MB << 20, LOG_KEEP);
+
+    static final CommandStats STATS = new CommandStats(statsNames(),
+            STATS_FILE.isBlank() ? null : java.nio.file.Path.of(STATS_FILE), STATS_DUMP_MS);
+
+    static final DbPool POOL = new DbPool(DB, USER, PASS, DB_MIN_POOL, DB_MAX_POOL, DB_BORROW_MS, DB_LEAK_MS,
+                                          DB_LEAK_TRACE);
+
+    /* built before the vote writers – they commit through it */
+    static final Tallies TALLIES = new Tallies(POOL, java.nio.file.Path.of(TALLY_FILE), TALLY_CHECKPOINT_MS);
+
+    /* turnout counts follow every commit, so they listen before the writers start */
+    static final Turnout TURNOUT = new Turnout(POOL);
+    static { TALLIES.listen(TURNOUT::committed); }
+
+    /* metrics fed from the request path and the vote commits */
+    static final LongAdder            ACCEPTED  = new LongAdder(), REJECTED = new LongAdder();
+    private static final AtomicInteger BUSY      = new AtomicInteger();      // commands executing right now
+    private static final LongAdder     COMMITTED = new LongAdder();
+    private static final Metrics.Rate  VOTE_RATE = new Metrics.Rate(11);     // votes/s over the last 10 s
+    static { TALLIES.listen(rows -> { COMMITTED.add(rows.size()); VOTE_RATE.add(rows.size()); }); }
+    private static volatile NioServer NIO;
+
+    private static final Set<String> LIMITED = Set.of("login", "castVote", "castBallot", "checkCNIC", "verifyCNIC", "updatePassword");
+    private static final RateLimiter<String> BY_IP   =
+            LIMIT_IP_RATE > 0 ? new RateLimiter<>(LIMIT_IP_RATE, LIMIT_IP_BURST, LIMIT_MAX_KEYS) : null;
+    private static final RateLimiter<Long>   BY_CNIC =
+            LIMIT_CNIC_RATE > 0 ? new RateLimiter<>(LIMIT_CNIC_RATE, LIMIT_CNIC_BURST, LIMIT_MAX_KEYS) : null;
+    private static final LongAdder THROTTLED = new LongAdder();
+    private static final Reply     SLOW_DOWN = Reply.line("ERROR:RATE_LIMITED – too many requests, retry later");
+
+    private static final VoteIngest VOTES =
+            new VoteIngest(POOL, TALLIES, VOTE_BATCH, VOTE_FLUSH_MS, VOTE_QUEUE, VOTE_TIMEOUT_MS);
+
+    private static final VoteLog WAL = openWal();
+
+    static final ResultCache    CACHE      = new ResultCache(CACHE_MAX_KB * 1024L);
+    static final FinalResults   RESULTS    = new FinalResults(POOL, VOTES, WAL, RESULT_THREADS, CACHE::invalidate);
+    static final Export         EXPORT     = new Export(POOL, EXPORT_CHUNK, EXPORT_MAX);
+    static final PushHub        PUSH       = new PushHub(TALLIES, VoterServer::activeElection,
+                                                         PUSH_TALLY_MS, PUSH_HEARTBEAT_MS);
+    static final ElectionState  ELECTION   = new ElectionState(POOL, ELECTION_REFRESH_MS, RESULTS::finished,
+                                                               VoterServer::statusChanged);
+    static final CandidateIndex CANDIDATES = new CandidateIndex(POOL);
+    static final VotedSet       VOTED      = new VotedSet(POOL);
+    static final PartyDirectory PARTIES    = new PartyDirectory(POOL);
+    static final NationalResults NATIONAL  = new NationalResults(TURNOUT, TALLIES, CANDIDATES, NATIONAL_REFRESH_MS);
+
+    static final int MAX_LINE = 1 << 20;   // longest accepted request line
+
+    /* batch;cmd;data␞cmd;data… – sub‑requests and their replies are separated by ASCII RS */
+    static final String BATCH_SEP = "\u001E";
+    private static final int BATCH_MAX = 32;
+
+    /** commands with no side effects – a batch made only of these may run in parallel */
+    private static final Set<String> READ_ONLY = Set.of(
+            "checkCNIC", "verifyCNIC", "getConstituency", "getUserName", "getParties", "checkCandidate",
+            "getAllCandidates", "getCandidatesBySeat", "getAllParties", "searchPartyByName",
+            "getPartiesCount", "getCandidatesCount", "getAllVoters", "searchVoterByCnic", "getVotersNumber",
+            "getElectionStatus", "getSeatResults", "getPartyResults", "selectElectionStopTime", "hasVoted",
+            "getLiveResults", "getNationalResults", "getTurnout");
+
+    /* local commands that wait in the vote queue – a batch gives its connection back first */
+    private static final Set<String> QUEUED = Set.of("castVote", "castBallot");
+
+    private static final ExecutorService BATCH_EXEC =
+            Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("ems-batch-", 0).factory());
+
+    /** connections currently handed to a worker (accepted, not yet closed) */
+    private static final Semaphore INFLIGHT = new Semaphore(MAX_INFLIGHT);
+
+    /** blocking engine: subscriptions, each on a virtual thread of its own instead of a worker */
+    private static final Semaphore     SUBSCRIBERS        = new Semaphore(MAX_INFLIGHT);
+    private static final ThreadFactory SUBSCRIBER_THREADS = Thread.ofVirtual().name("ems-sub-", 0).factory();
+
     public static void main(String[] args) {
-        System.out.println("🟢 EMS server listening on port " + PORT);
-        try (ServerSocket ss = new ServerSocket(PORT)) {
-            while (true) new Thread(() -> serveClient(ss)).start();
+        if (!"nio".equalsIgnoreCase(ENGINE) && "pool".equalsIgnoreCase(EXECUTOR))
+            throw new IllegalStateException("ems.executor=pool needs ems.engine=nio – the blocking engine keeps a "
+                    + "thread per open keep‑alive connection, so " + POOL_THREADS + " idle clients would take the pool");
+        warmUp();
+        ExecutorService workers = newWorkerExecutor();
+        startMetrics(workers);
+        System.out.println("🟢 EMS server listening on port " + PORT + " (" + ENGINE + " engine, "
+                + EXECUTOR + " executor, max " + MAX_INFLIGHT + " in flight)");
+
+        if ("nio".equalsIgnoreCase(ENGINE)) {
+            try {
+                NIO = new NioServer(PORT, BACKLOG, NIO_LOOPS, workers, MAX_INFLIGHT, IDLE_TIMEOUT_MS, KEEPALIVE_MS);
+                NIO.run();
+            } catch (IOException e) { e.printStackTrace(); }
+            return;
+        }
+
+        try (ServerSocket ss = new ServerSocket(PORT, BACKLOG)) {
+            while (true) {
+                Socket sock;
+                try { sock = ss.accept(); }
+                catch (IOException e) { e.printStackTrace(); continue; }   // e.g. EMFILE – keep accepting
+                ACCEPTED.increment();
+
+                if (!INFLIGHT.tryAcquire()) { rejectBusy(sock); continue; }
+                try {
+                    workers.execute(() -> {
+                        try { serveClient(sock); } finally { INFLIGHT.release(); }
+                    });
+                } catch (RejectedExecutionException e) {
+                    INFLIGHT.release();
+                    rejectBusy(sock);
+                }
+            }
         } catch (IOException e) { e.printStackTrace(); }
     }
 
+    /** rebuild the voted set of a running election before the first booth connects,
+        and finish results of elections that closed while the server was down */
+    private static void warmUp() {
+        try {
+            ElectionState.Snapshot s = ELECTION.current();
+            if (s.active() > 0) VOTED.preload(s.active());
+            RESULTS.catchUp(s.finished());
+        } catch (SQLException e) { System.out.println("⚠️ warm‑up: " + e.getMessage() + " – loading on first vote"); }
+    }
+
+    private static VoteLog openWal() {
+        if (WAL_DIR.isBlank()) return null;
+        try {
+            VoteLog log = new VoteLog(java.nio.file.Path.of(WAL_DIR), WAL_SEGMENT_MB << 20, POOL, TALLIES);
+            System.out.println("📝 vote write‑ahead log in " + WAL_DIR);
+            return log;
+        } catch (IOException e) {
+            throw new UncheckedIOException("cannot open vote log " + WAL_DIR, e);
+        }
+    }
+
+    private static void startMetrics(ExecutorService workers) {
+        if (METRICS_PORT <= 0) return;
+        try {
+            Metrics m = new Metrics(METRICS_BIND, METRICS_PORT, o -> metrics(o, workers));
+            System.out.println("📈 metrics on http://" + METRICS_BIND + ":" + m.port() + "/metrics");
+        } catch (IOException e) {
+            System.out.println("⚠️ metrics endpoint: " + e.getMessage() + " – running without it");
+        }
+    }
+
+    /** everything EMS specific the metrics endpoint reports; read at scrape time */
+    private static void metrics(Metrics.Out o, ExecutorService workers) {
+        NioServer nio  = NIO;
+        int       open = nio != null ? nio.connections() : MAX_INFLIGHT - INFLIGHT.availablePermits();
+        o.gauge("ems_connections_open", "client connections open", null, open)
+         .gauge("ems_connections_max", "connection limit (ems.maxInFlight)", null, MAX_INFLIGHT)
+         .counter("ems_connections_accepted_total", "connections accepted", null, ACCEPTED.sum())
+         .counter("ems_connections_rejected_total", "connections refused with BUSY at the limit", null, REJECTED.sum())
+         .gauge("ems_push_subscribers", "subscribe connections", null, PUSH.subscribers());
+        long q = Metrics.acceptQueue(PORT);
+        if (q >= 0) o.gauge("ems_accept_queue", "connections waiting in the kernel accept queue", null, q);
+        o.gauge("ems_accept_backlog", "accept queue limit (ems.backlog)", null, BACKLOG);
+
+        o.gauge("ems_commands_executing", "commands being executed by workers", null, BUSY.get());
+        if (workers instanceof ThreadPoolExecutor tp) {
+            o.gauge("ems_worker_threads", "worker pool threads", null, tp.getPoolSize())
+             .gauge("ems_worker_threads_max", "worker pool size (ems.poolThreads)", null, tp.getMaximumPoolSize())
+             .gauge("ems_worker_active", "worker threads running a task", null, tp.getActiveCount())
+             .gauge("ems_worker_queue", "tasks waiting for a worker thread", null, tp.getQueue().size());
+        }
+
+        o.gauge("ems_db_connections", "pooled JDBC connections", "state=\"active\"", POOL.active())
+         .gauge("ems_db_connections", "pooled JDBC connections", "state=\"idle\"", POOL.idle())
+         .gauge("ems_db_connections_open", "physical JDBC connections opened so far", null, POOL.open())
+         .gauge("ems_db_connections_max", "pool limit (ems.db.maxPool)", null, POOL.max())
+         .gauge("ems_db_waiting", "threads waiting to borrow a connection", null, POOL.waiting())
+         .counter("ems_db_borrows_total", "connections borrowed", null, POOL.borrows())
+         .counter("ems_db_borrow_wait_seconds_total", "time spent waiting to borrow", null, POOL.waitSeconds())
+         .counter("ems_db_borrow_timeouts_total", "borrows that timed out", null, POOL.timeouts())
+         .counter("ems_db_leaks_total", "connections held longer than ems.db.leakMs", null, POOL.leaks());
+
+        o.counter("ems_votes_committed_total", "votes committed to MySQL", null, COMMITTED.sum())
+         .gauge("ems_votes_per_second", "votes committed per second, last 10 s", null, VOTE_RATE.perSecond())
+         .gauge("ems_vote_queue", "ballots waiting for the batch writer", null, VOTES.queued());
+        if (WAL != null) o.gauge("ems_wal_backlog", "logged votes not yet in MySQL", null, WAL.backlog());
+
+        long h = CACHE.hits(), m = CACHE.misses();
+        o.counter("ems_cache_hits_total", "result cache hits", null, h)
+         .counter("ems_cache_misses_total", "result cache misses", null, m)
+         .gauge("ems_cache_hit_ratio", "result cache hits / lookups since start", null, h + m == 0 ? 0 : (double) h / (h + m))
+         .counter("ems_cache_evictions_total", "result cache evictions", null, CACHE.evictions())
+         .gauge("ems_cache_entries", "result cache entries", null, CACHE.entries())
+         .gauge("ems_cache_bytes", "result cache size", null, CACHE.bytes());
+
+        o.counter("ems_rate_limited_total", "requests refused by the per‑address / per‑CNIC limits", null, THROTTLED.sum());
+        if (BY_IP != null)   o.gauge("ems_rate_limit_keys", "tracked rate limit buckets", "by=\"ip\"", BY_IP.size());
+        if (BY_CNIC != null) o.gauge("ems_rate_limit_keys", "tracked rate limit buckets", "by=\"cnic\"", BY_CNIC.size());
+
+        o.counter("ems_access_log_dropped_total", "access log records dropped on a full ring", null, LOG.dropped());
+
+        List<Map.Entry<String, CommandStats.Cmd>> cmds = STATS.snapshot();
+        for (Map.Entry<String, CommandStats.Cmd> e : cmds)
+            o.counter("ems_requests_total", "requests answered", "cmd=\"" + e.getKey() + "\"", e.getValue().count.sum());
+        for (Map.Entry<String, CommandStats.Cmd> e : cmds)
+            o.counter("ems_request_errors_total", "requests answered with ERROR", "cmd=\"" + e.getKey() + "\"", e.getValue().errors.sum());
+        for (Map.Entry<String, CommandStats.Cmd> e : cmds)
+            for (double qt : new double[]{ 0.5, 0.99, 0.999 })
+                o.gauge("ems_request_latency_seconds", "request latency quantiles since start or stats;reset",
+                        "cmd=\"" + e.getKey() + "\",quantile=\"" + qt + "\"", e.getValue().quantile(qt) / 1e6);
+    }
+
+    /** virtual thread per task, or a fixed platform pool whose queue never exceeds MAX_INFLIGHT;
+        runs whole connections (blocking engine, virtual only) or single commands (nio engine) */
+    private static ExecutorService newWorkerExecutor() {
+        if ("pool".equalsIgnoreCase(EXECUTOR))
+            return new ThreadPoolExecutor(POOL_THREADS, POOL_THREADS, 60, TimeUnit.SECONDS,
+                                          new ArrayBlockingQueue<>(MAX_INFLIGHT),
+                                          Thread.ofPlatform().name("ems-conn-", 0).factory());
+        return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("ems-conn-", 0).factory());
+    }
+
+    /** over the limit: answer straight from the accept thread, no DB, no worker */
+    private static void rejectBusy(Socket sock) {
+        REJECTED.increment();
+        try (sock) {
+            sock.getOutputStream().write("BUSY\n".getBytes());
+        } catch (IOException ignored) { }
+    }
+
     /* ========================================================= */
-    private static void serveClient(ServerSocket ss) {
-        try (Socket sock = ss.accept();
-             BufferedReader in  = new BufferedReader(new InputStreamReader(sock.getInputStream()));
-             PrintWriter    out = new PrintWriter(sock.getOutputStream(), true);
-             Connection cn  = DriverManager.getConnection(DB, USER, PASS))
-        {
-            String req = in.readLine();
-            String cli = sock.getInetAddress().getHostAddress();
-            System.out.println("📥 [" + cli + "] " + req);
-
-            if (req == null || req.isBlank()) { out.println("ERROR: empty"); return; }
-            String[] parts = req.split(";", 2);
-            String cmd  = parts[0].trim();
-            String data = parts.length > 1 ? parts[1] : "";
-
-            String res = switch (cmd) {
-
-                /* heartbeat */
-                case "ping"                 -> "pong";
-
-                /* ───── USERS ───── */
-                case "checkCNIC"            -> checkCNIC(cn, data);
-                case "verifyCNIC"           -> checkCNIC(cn, data).equals("DUPLICATE") ? "OK" : "NOT_FOUND";
-                case "getConstituency"      -> getConstituency(cn, data);
-                case "signupUser"           -> signupUser(cn, data);
-                case "login"                -> login(cn, data);
-                case "updatePassword"       -> updatePassword(cn, data);
-                case "getUserName"          -> getUserName(cn, data);
-
-                /* ───── CANDIDATES / PARTIES ───── */
-                case "getParties"           -> getParties(cn);
-                case "checkCandidate"       -> checkCandidate(cn, data);
-                case "registerCandidate"    -> registerCandidate(cn, data);
-                case "getAllCandidates"     -> getAllCandidates(cn);
-                case "getCandidatesBySeat"  -> getCandidatesBySeat(cn, data);
-                case "getAllParties"        -> getAllParties(cn);
-                case "searchPartyByName"    -> searchPartyByName(cn, data);
-                case "getPartiesCount" -> String.valueOf(getPartiesCount(cn));
-                case "getCandidatesCount" -> String.valueOf(getCandidatesCount(cn));
-
-
-                /* ───── VOTERS ───── */
-                case "getAllVoters"         -> getAllVoters(cn);
-                case "searchVoterByCnic"    -> searchVoterByCnic(cn, data);
-                case "getVotersNumber" -> String.valueOf(getVotersNumber(cn));
-
-
-                /* ───── ELECTION WINDOW ───── */
-                case "registerElectionTime" -> registerElectionTime(cn, data);
-                case "stopElectionTime"     -> stopElectionTime(cn, data);
-                case "getElectionStatus"    -> getElectionStatus(cn);
-
-                /* ───── VOTING ───── */
-                case "castVote"             -> castVote(cn, data);
-                case "getSeatResults"       -> getSeatResults(cn, data);
-                case "getPartyResults"     -> getPartyResults(cn, data);
-                case "selectElectionStopTime" -> getElectionStopTime(cn);
-
-
-
-                /* ───── ADMIN INSERTS ───── */
-                case "addConstituency"      -> addConstituency(cn, data);
-                case "registerParty"        -> registerParty(cn, data);
-                 
-                
-
-                default -> "ERROR: unknown cmd";
-            };
-
-            out.println(res);
-            System.out.println("📤 [" + cli + "] " + res);
-        } catch (Exception e) { e.printStackTrace(); }
+    /* keep‑alive: one connection carries many newline‑framed requests
+       until the client closes it, it sits idle for IDLE_TIMEOUT_MS, or it has
+       sent nothing but heartbeat pings for KEEPALIVE_MS;
+       "hello;bin/1" switches the rest of the connection to Wire frames */
+    private static void serveClient(Socket sock) {
+        String  cli  = sock.getInetAddress().getHostAddress();
+        boolean kept = false;                                    // handed to a subscriber thread
+        try {
+            InputStream  in  = new BufferedInputStream(sock.getInputStream());
+            OutputStream out = new BufferedOutputStream(sock.getOutputStream());
+            sock.setSoTimeout(IDLE_TIMEOUT_MS);
+            sock.setTcpNoDelay(true);
+
+            String req;
+            long   work = System.currentTimeMillis();            // last request that was not a ping
+            while ((req = readLine(in)) != null) {
+                if (!isPing(req)) work = System.currentTimeMillis();
+                else if (System.currentTimeMillis() - work > KEEPALIVE_MS) return;
+                if (isSubscribe(req)) {
+                    long t0 = System.nanoTime();
+                    PushHub.Grant g = subscribe(req.substring(req.indexOf(';') + 1));
+                    if (!g.topics().isEmpty() && !SUBSCRIBERS.tryAcquire()) g = new PushHub.Grant("BUSY", Set.of());
+                    logStream(cli, req, t0, g.reply().length() + 1, g.reply());
+                    out.write((g.reply() + "\n").getBytes());
+                    out.flush();
+                    if (!g.topics().isEmpty()) { handOff(sock, g.topics(), out); kept = true; return; }
+                    continue;
+                }
+                if (Export.isExport(req)) {
+                    long   t0   = System.nanoTime();
+                    long[] sent = { 0 };
+                    String end  = EXPORT.run(req, chunk -> { out.write(chunk); out.flush(); sent[0] += chunk.length; });
+                    logStream(cli, req, t0, sent[0], end);
+                    continue;
+                }
+                if (isBinaryHello(req)) {
+                    out.write((Wire.ACK + "\n").getBytes());
+                    out.flush();
+                    serveBinary(cli, new DataInputStream(in), out, work);
+                    return;
+                }
+                out.write((process(cli, req) + "\n").getBytes());
+                out.flush();
+            }
+        } catch (SocketTimeoutException idle) {
+            /* client went quiet – drop the connection */
+        } catch (Exception e) {
+            e.printStackTrace();
+        } finally {
+            if (!kept) try { sock.close(); } catch (IOException ignored) { }
+        }
+    }
+
+    /* a subscription only waits for events – it gives its worker and INFLIGHT permit back
+       and carries on on a virtual thread of its own, counted in SUBSCRIBERS */
+    private static void handOff(Socket sock, Set<String> topics, OutputStream out) {
+        SUBSCRIBER_THREADS.newThread(() -> {
+            try (sock) { serveSubscriber(topics, out); }
+            catch (IOException ignored) { }
+            finally { SUBSCRIBERS.release(); }
+        }).start();
+    }
+
+    private static void serveBinary(String cli, DataInputStream in, OutputStream out, long work) throws IOException {
+        while (true) {
+            int len;
+            try { len = in.readInt(); } catch (EOFException closed) { return; }
+            if (len < 8 || len > Wire.MAX_FRAME) throw new IOException("bad frame length " + len);
+            byte[] body = new byte[len];
+            in.readFully(body);
+            if (!isPing(body)) work = System.currentTimeMillis();
+            else if (System.currentTimeMillis() - work > KEEPALIVE_MS) return;
+            out.write(processFrame(cli, body));
+            out.flush();
+        }
+    }
+
+    private static final byte[] DROPPED = new byte[0];
+
+    /* the rest of the connection carries pushed events, until the client goes away
+       or falls PUSH_QUEUE events behind */
+    private static void serveSubscriber(Set<String> topics, OutputStream out) throws IOException {
+        BlockingQueue<byte[]> q = new ArrayBlockingQueue<>(PUSH_QUEUE);
+        PushHub.Sink sink = new PushHub.Sink() {
+            @Override public boolean offer(byte[] line) { return q.offer(line); }
+            @Override public void drop() { q.clear(); while (!q.offer(DROPPED)) q.poll(); }
+        };
+        PUSH.subscribe(topics, sink);
+        try {
+            for (byte[] e; (e = q.take()) != DROPPED; ) {
+                out.write(e);
+                if (q.isEmpty()) out.flush();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            PUSH.unsubscribe(sink);
+        }
+    }
+
+    /** bytes up to '\n' (CR stripped), null at end of stream */
+    private static String readLine(InputStream in) throws IOException {
+        ByteArrayOutputStream buf = new ByteArrayOutputStream(128);
+        int b;
+        while ((b = in.read()) != '\n') {
+            if (b < 0) return buf.size() == 0 ? null : buf.toString();
+            if (buf.size() == MAX_LINE) throw new IOException("request line too long");
+            buf.write(b);
+        }
+        byte[] line = buf.toByteArray();
+        int n = line.length > 0 && line[line.length - 1] == '\r' ? line.length - 1 : line.length;
+        return new String(line, 0, n);
+    }
+
+    static boolean isSubscribe(String req) {
+        return req.equals("subscribe") || req.startsWith("subscribe;");
+    }
+
+    /** client heartbeat – it keeps a connection from IDLE_TIMEOUT_MS, not from KEEPALIVE_MS */
+    static boolean isPing(String req) {
+        return req.equals("ping") || req.startsWith("ping;");
+    }
+
+    static boolean isPing(byte[] frame) {
+        return frame.length >= 6 && frame[4] == 0 && frame[5] == Wire.PING;   // id, then u16 opcode
+    }
+
+    static boolean isBinaryHello(String req) {
+        return req.equals(Wire.HELLO + ";" + Wire.VERSION);
+    }
+
+    /** text protocol, shared by both engines: "cmd;data" → reply line */
+    static String process(String cli, String req) {
+        if (req == null || req.isBlank()) return "ERROR: empty";
+        long     t0    = System.nanoTime();
+        String[] parts = req.split(";", 2);
+        String   cmd   = parts[0].trim(), data = parts.length > 1 ? parts[1] : "";
+        Reply    res   = throttled(cli, cmd, data) ? SLOW_DOWN : null;
+        if (res == null) {
+            BUSY.incrementAndGet();
+            try { res = handle(cmd, data); } finally { BUSY.decrementAndGet(); }
+        }
+        String   text  = res.text();
+        done(cli, cmd, data, req.length() + 1, text.length() + 1, System.nanoTime() - t0, status(res));
+        return text;
+    }
+
+    /** binary protocol, shared by both engines: frame body → complete reply frame */
+    static byte[] processFrame(String cli, byte[] body) {
+        Wire.Request r;
+        try { r = Wire.decode(body); }
+        catch (IOException e) {
+            int id = body.length >= 4 ? java.nio.ByteBuffer.wrap(body).getInt() : 0;
+            return Wire.encode(id, 0, Reply.line("ERROR: bad frame – " + e.getMessage()));
+        }
+        long   t0  = System.nanoTime();
+        Reply  res = throttled(cli, r.cmd(), r.data()) ? SLOW_DOWN : null;
+        if (res == null) {
+            BUSY.incrementAndGet();
+            try { res = handle(r.cmd(), r.data()); } finally { BUSY.decrementAndGet(); }
+        }
+        byte[] out = Wire.encode(r.id(), r.opcode(), res);
+        done(cli, r.cmd(), r.data(), body.length + 4, out.length, System.nanoTime() - t0, status(res));
+        return out;
+    }
+
+    /** access‑log record of a request answered outside process(): an export or a subscribe */
+    static void logStream(String cli, String req, long t0, long bytesOut, String status) {
+        String[] p = req.split(";", 2);
+        done(cli, p[0].trim(), p.length > 1 ? p[1] : "", req.length() + 1, bytesOut, System.nanoTime() - t0, status);
+    }
+
+    /** every answered request: histogram and counters, then the access log */
+    private static void done(String cli, String cmd, String data, long bytesIn, long bytesOut, long nanos, String status) {
+        STATS.record(cmd, nanos, bytesIn, bytesOut, status != null && status.startsWith("ERROR"));
+        LOG.log(cli, cmd, redact(cmd, data), bytesIn, bytesOut, nanos, status);
+    }
+
+    /** what the access log may keep of a request: no passwords or hashes, only the CNIC they belong to */
+    private static String redact(String cmd, String data) {
+        if (data == null) return null;
+        String[] f = data.split(",", -1);
+        return switch (cmd) {
+            case "login", "updatePassword" -> f[0];
+            case "signupUser"              -> f.length > 1 ? f[1] : "";          // Name,CNIC,…
+            case "subscribe"               -> f.length > 1 ? f[0] + "," + f[1] : f[0];   // topics[,cnic,pw]
+            case "batch" -> {
+                String[] subs = data.split(BATCH_SEP, -1);
+                for (int i = 0; i < subs.length; i++) {
+                    String[] p = subs[i].split(";", 2);
+                    if (p.length > 1) subs[i] = p[0] + ";" + redact(p[0].trim(), p[1]);
+                }
+                yield String.join(BATCH_SEP, subs);
+            }
+            default -> data;
+        };
+    }
+
+    /** commands with their own histogram – the rest share "other" */
+    private static List<String> statsNames() {
+        List<String> names = new ArrayList<>(List.of(Wire.COMMANDS));
+        names.addAll(List.of(Wire.HELLO, "subscribe", Export.VOTERS, Export.CANDIDATES));
+        return names;
+    }
+
+    /** stats;[reset] → cmd,count,errors,p50ms,p99ms,p999ms,maxms,bytesIn,bytesOut – busiest first;
+        reset starts the histograms afresh after this reply */
+    private static Reply stats(String data) {
+        List<Object[]> rows = new ArrayList<>();
+        for (Map.Entry<String, CommandStats.Cmd> e : STATS.snapshot()) {
+            CommandStats.Cmd c = e.getValue();
+            rows.add(new Object[]{ e.getKey(), c.count.sum(), c.errors.sum(),
+                    ms(c.quantile(0.50)), ms(c.quantile(0.99)), ms(c.quantile(0.999)), ms(c.maxMicros.get()),
+                    c.bytesIn.sum(), c.bytesOut.sum() });
+        }
+        if (data.trim().equalsIgnoreCase("reset")) STATS.reset();
+        return Reply.rows(rows, "NO_RESULTS");
+    }
+
+    private static String ms(long micros) {
+        return String.format(java.util.Locale.ROOT, "%.3f", micros / 1e3);
+    }
+
+    /**
+     * Over the limit of the client address or of the CNIC (first field of data)?
+     * Checked before any worker or DB work; a batch is refused whole if one of
+     * its sub‑requests is.
+     */
+    private static boolean throttled(String cli, String cmd, String data) {
+        if (!LIMITED.contains(cmd) && !cmd.equals("batch")) return false;
+        Map<Long, Integer> cnics = new HashMap<>();
+        int n = limited(cmd, data, cnics);
+        if (n == 0) return false;
+
+        /* a batch is admitted or refused whole – tokens taken before a refusal go back */
+        boolean over = BY_IP != null && !BY_IP.tryAcquire(cli, n);
+        if (!over && BY_CNIC != null) {
+            List<Long> taken = new ArrayList<>(cnics.size());
+            for (Map.Entry<Long, Integer> e : cnics.entrySet()) {
+                if (!BY_CNIC.tryAcquire(e.getKey(), e.getValue())) { over = true; break; }
+                taken.add(e.getKey());
+            }
+            if (over) {
+                for (long k : taken) BY_CNIC.refund(k, cnics.get(k));
+                if (BY_IP != null) BY_IP.refund(cli, n);
+            }
+        }
+        if (over) THROTTLED.increment();
+        return over;
+    }
+
+    /** limited requests in cmd – itself or the sub‑requests of a batch; their CNICs counted into cnics */
+    private static int limited(String cmd, String data, Map<Long, Integer> cnics) {
+        if (cmd.equals("batch")) {
+            int n = 0;
+            for (String sub : data.split(BATCH_SEP, -1)) {
+                String[] p = sub.split(";", 2);
+                if (!p[0].trim().equals("batch")) n += limited(p[0].trim(), p.length > 1 ? p[1] : "", cnics);
+            }
+            return n;
+        }
+        if (!LIMITED.contains(cmd)) return 0;
+        int  comma = data.indexOf(',');
+        long cnic  = Cnic.key(comma < 0 ? data.trim() : data.substring(0, comma).trim());
+        if (cnic >= 0) cnics.merge(cnic, 1, Integer::sum);
+        return 1;
+    }
+
+    /** access‑log status: the reply line, or the row count of a table */
+    private static String status(Reply r) {
+        return r.isTable() ? "rows=" + r.rows.size() : r.line;
+    }
+
+    /** borrows MySQL only for real commands */
+    private static Reply handle(String cmd, String data) {
+        Reply local = local(cmd, data);
+        if (local != null) return local;
+
+        try (Connection cn = POOL.borrow()) {
+            return dispatch(cn, cmd, data);
+        } catch (Exception e) {
+            e.printStackTrace();
+            return Reply.line("ERROR:" + e.getMessage());
+        }
+    }
+
+    /** commands that need no DB connection from handle() – they use none or manage
+        their own – null for the rest */
+    private static Reply local(String cmd, String data) {
+        return switch (cmd) {
+            case "ping"      -> Reply.line("pong");              // heartbeat
+            case "poolStats" -> Reply.line(POOL.stats());
+            case Wire.HELLO  -> Reply.line("ERROR: unsupported protocol " + data);
+            case "subscribe" -> Reply.line("ERROR:subscribe must be the first line of a text connection");
+            case Export.VOTERS, Export.CANDIDATES -> Reply.line("ERROR:exports stream over a text connection only");
+            case "batch"     -> batch(data);
+            case "castVote"  -> Reply.line(castVote(data));     // must not hold a connection while queued
+            case "castBallot"             -> Reply.line(castBallot(data));
+            case "getElectionStatus"      -> Reply.line(getElectionStatus());
+            case "selectElectionStopTime" -> Reply.line(getElectionStopTime());
+            case "hasVoted"               -> Reply.line(hasVoted(data));
+            case "getLiveResults"         -> getLiveResults(data);
+            case "getSeatResults", "getPartyResults" -> results(cmd, data);
+            case "cacheStats"             -> Reply.line(CACHE.stats());
+            case "searchPartyByName"      -> searchPartyByName(data);
+            case "getNationalResults"     -> getNationalResults(data);
+            case "getTurnout"             -> getTurnout(data);
+            case "stats"                  -> stats(data);
+            default          -> null;
+        };
+    }
+
+    /**
+     * N sub‑requests, one reply.  Normally they run in order on a single pooled
+     * connection; if every one is read‑only and the pool has spare connections
+     * they fan out in parallel instead (one JDBC connection cannot run statements
+     * concurrently).  Sub‑replies come back in request order in their text form.
+     */
+    private static Reply batch(String data) {
+        String[] subs = data.split(BATCH_SEP, -1);
+        if (subs.length > BATCH_MAX) return Reply.line("ERROR: batch larger than " + BATCH_MAX);
+
+        String[] cmds = new String[subs.length], args = new String[subs.length];
+        boolean readOnly = true;
+        for (int i = 0; i < subs.length; i++) {
+            String[] p = subs[i].split(";", 2);
+            cmds[i] = p[0].trim();
+            args[i] = p.length > 1 ? p[1] : "";
+            if (cmds[i].equals("batch")) return Reply.line("ERROR: nested batch");
+            readOnly &= READ_ONLY.contains(cmds[i]);
+        }
+
+        String[] out = new String[subs.length];
+        if (readOnly && subs.length > 1 && POOL.idle() >= subs.length - 1) {
+            List<Future<Reply>> fs = new ArrayList<>(subs.length);
+            for (int i = 0; i < subs.length; i++) {
+                String c = cmds[i], a = args[i];
+                fs.add(BATCH_EXEC.submit(() -> handle(c, a)));
+            }
+            for (int i = 0; i < subs.length; i++) {
+                try { out[i] = fs.get(i).get().text(); }
+                catch (InterruptedException e) { Thread.currentThread().interrupt(); out[i] = "ERROR: interrupted"; }
+                catch (ExecutionException e)   { out[i] = "ERROR:" + e.getCause().getMessage(); }
+            }
+        } else {
+            Connection cn = null;                          // borrowed on first need, kept between DB sub‑requests
+            String     noDb = null;                        // borrow failure – the rest of the DB sub‑requests get it too
+            try {
+                for (int i = 0; i < subs.length; i++) {
+                    if (QUEUED.contains(cmds[i])) cn = giveBack(cn);   // never hold a connection while queued
+                    Reply r;
+                    try {
+                        r = local(cmds[i], args[i]);
+                        if (r == null && cmds[i].isEmpty()) r = Reply.line("ERROR: empty");
+                        if (r == null && noDb != null) r = Reply.line(noDb);
+                        if (r == null) {
+                            if (cn == null) cn = POOL.borrow();
+                            r = dispatch(cn, cmds[i], args[i]);
+                        }
+                    } catch (SQLException e) {
+                        noDb = "ERROR:" + e.getMessage();
+                        r = Reply.line(noDb);
+                    } catch (Exception e) {
+                        e.printStackTrace();
+                        r = Reply.line("ERROR:" + e.getMessage());
+                    }
+                    out[i] = r.text();
+                }
+            } finally {
+                giveBack(cn);
+            }
+        }
+        return Reply.line(String.join(BATCH_SEP, out));
+    }
+
+    /** closes cn (back to the pool) if there is one; always null */
+    private static Connection giveBack(Connection cn) {
+        if (cn != null) try { cn.close(); } catch (SQLException ignored) { }
+        return null;
+    }
+
+    private static Reply dispatch(Connection cn, String cmd, String data) {
+        return switch (cmd) {
+
+            /* ───── USERS ───── */
+            case "checkCNIC"            -> Reply.line(checkCNIC(cn, data));
+            case "verifyCNIC"           -> Reply.line(checkCNIC(cn, data).equals("DUPLICATE") ? "OK" : "NOT_FOUND");
+            case "getConstituency"      -> getConstituency(cn, data);
+            case "signupUser"           -> Reply.line(signupUser(cn, data));
+            case "login"                -> Reply.line(login(cn, data));
+            case "updatePassword"       -> Reply.line(updatePassword(cn, data));
+            case "getUserName"          -> Reply.line(getUserName(cn, data));
+
+            /* ───── CANDIDATES / PARTIES ───── */
+            case "getParties"           -> Reply.line(getParties(cn));
+            case "checkCandidate"       -> Reply.line(checkCandidate(cn, data));
+            case "registerCandidate"    -> Reply.line(registerCandidate(cn, data));
+            case "getAllCandidates"     -> getAllCandidates(cn, data);
+            case "getCandidatesBySeat"  -> getCandidatesBySeat(cn, data);
+            case "getAllParties"        -> getAllParties(cn, data);
+            case "getPartiesCount" -> Reply.line(String.valueOf(getPartiesCount(cn)));
+            case "getCandidatesCount" -> Reply.line(String.valueOf(getCandidatesCount(cn)));
+
+
+            /* ───── VOTERS ───── */
+            case "getAllVoters"         -> getAllVoters(cn, data);
+            case "searchVoterByCnic"    -> searchVoterByCnic(cn, data);
+            case "getVotersNumber" -> Reply.line(String.valueOf(getVotersNumber(cn)));
+
+
+            /* ───── ELECTION WINDOW ───── */
+            case "registerElectionTime" -> Reply.line(registerElectionTime(cn, data));
+            case "stopElectionTime"     -> Reply.line(stopElectionTime(cn, data));
+
+            /* ───── VOTING ───── */
+
+
+            /* ───── ADMIN INSERTS ───── */
+            case "addConstituency"      -> Reply.line(addConstituency(cn, data));
+            case "registerParty"        -> Reply.line(registerParty(cn, data));
+             
+            
+
+            default -> Reply.line("ERROR: unknown cmd");
+        };
     }
 
     /* ========================================================= */
@@ -122,6 +787,7 @@ public class VoterServer {
             if (id == -1) return "ERROR:DB failure";
 
             scheduleAutoEvents(c, id, start, stop);
+            ELECTION.reload(c);
             return "OK: Election window saved (" + status + ").";
         } catch (Exception ex) { return "ERROR:" + ex.getMessage(); }
     }
@@ -153,10 +819,10 @@ public class VoterServer {
             return gk.next() ? gk.getInt(1) : -1;
         }
     }
-    private static String getElectionStopTime(Connection c) {
-    try (Statement st = c.createStatement();
-         ResultSet rs = st.executeQuery("SELECT StopTime FROM Election_Time WHERE Status='Started' ORDER BY ID DESC LIMIT 1")) {
-        return rs.next() ? rs.getTimestamp(1).toString() : null;
+    private static String getElectionStopTime() {
+    try {
+        Timestamp stop = ELECTION.current().activeStop();
+        return stop != null ? stop.toString() : null;
     } catch (SQLException e) { return "ERROR:" + e.getMessage(); }
 }
     
@@ -229,125 +895,397 @@ private static int getCandidatesCount(Connection c) {
             """;
         try (PreparedStatement ps = c.prepareStatement(sql)) {
             ps.setString(1, by);
-            return ps.executeUpdate()==1 ? "OK: Election window stopped."
-                                         : "ERROR: No active window.";
+            if (ps.executeUpdate() != 1) return "ERROR: No active window.";
+            ELECTION.reload(c);
+            return "OK: Election window stopped.";
         } catch (SQLException e) { return "ERROR:"+e.getMessage(); }
     }
 
-    private static String getElectionStatus(Connection c) {
-        try (Statement st = c.createStatement();
-             ResultSet rs = st.executeQuery(
-                "SELECT Status FROM Election_Time ORDER BY ID DESC LIMIT 1")) {
-            return rs.next() ? rs.getString(1) : "NONE";
-        } catch (SQLException e) { return "ERROR:"+e.getMessage(); }
+    /* data = topic[+topic…][,adminCnic,password]   topics: status, tally (admins only)
+       reply = SUBSCRIBED, then EVENT;topic;payload lines until the client disconnects */
+    static PushHub.Grant subscribe(String data) {
+        String[]    p      = data.split(",", -1);
+        Set<String> topics = new HashSet<>();
+        for (String t : p[0].split("\\+")) {
+            String x = t.trim().toLowerCase();
+            if (x.isEmpty()) continue;
+            if (!PushHub.TOPICS.contains(x)) return new PushHub.Grant("ERROR:unknown topic " + x, Set.of());
+            topics.add(x);
+        }
+        if (topics.isEmpty()) topics.add(PushHub.STATUS);
+        if (topics.contains(PushHub.TALLY)) {
+            if (p.length != 3) return new PushHub.Grant("ERROR:tally needs admin credentials", Set.of());
+            try (Connection c = POOL.borrow()) {
+                if (!"Admin".equals(login(c, p[1] + "," + p[2])))
+                    return new PushHub.Grant("ERROR:admins only", Set.of());
+            } catch (SQLException e) { return new PushHub.Grant("ERROR:" + e.getMessage(), Set.of()); }
+        }
+        return new PushHub.Grant("SUBSCRIBED", topics);
+    }
+
+    /* ElectionState callback – the retained status event is status,latestId,stopTime */
+    private static void statusChanged(ElectionState.Snapshot s) {
+        PUSH.publish(PushHub.STATUS, s.status() + "," + s.latestId() + ","
+                     + (s.activeStop() == null ? "" : s.activeStop()), true);
+    }
+
+    /* running election for the tally push, -1 if none (or not loaded yet) */
+    private static int activeElection() {
+        try { return ELECTION == null ? -1 : ELECTION.current().active(); }
+        catch (SQLException e) { return -1; }
+    }
+
+    private static String getElectionStatus() {
+        try { return ELECTION.current().status(); }
+        catch (SQLException e) { return "ERROR:"+e.getMessage(); }
     }
 
     /* ========================================================= */
     /* 2)  VOTING                                                */
     /* ========================================================= */
 
-    /* data = voterCnic,Seat,CandidateCnic */
-    private static String castVote(Connection c, String csv) {
+    /* data = voterCnic,Seat,CandidateCnic
+       validated against the in‑memory election and candidate caches,
+       then handed to the group‑commit queue */
+    private static String castVote(String csv) {
         String[] p = csv.split(",",3);
         if (p.length!=3) return "ERROR:bad format";
-        String voter = p[0].trim();
-        String seat  = p[1].trim().toUpperCase();
-        String cand  = p[2].trim();
+        return castBallot(p[0], new String[]{p[1]}, new String[]{p[2]});
+    }
+
+    /* data = voterCnic,Seat,CandidateCnic[,Seat,CandidateCnic…]
+       one voter's choice in every race of the booth – all stored or none */
+    private static String castBallot(String csv) {
+        String[] p = csv.split(",",-1);
+        if (p.length < 3 || p.length % 2 == 0) return "ERROR:bad format";
+        int n = (p.length - 1) / 2;
+        String[] seats = new String[n], cands = new String[n];
+        for (int i = 0; i < n; i++) { seats[i] = p[1 + 2*i]; cands[i] = p[2 + 2*i]; }
+        return castBallot(p[0], seats, cands);
+    }
 
+    private static String castBallot(String voterRaw, String[] seatsRaw, String[] candsRaw) {
+        long vk = Cnic.key(voterRaw.trim());
+        int  eid;
         try {
-            /* current Started election */
-            int eid;
-            try (Statement st=c.createStatement();
-                 ResultSet rs=st.executeQuery(
-                     "SELECT ID FROM Election_Time WHERE Status='Started' ORDER BY ID DESC LIMIT 1")) {
-                if (!rs.next()) return "ERROR:No active election";
-                eid = rs.getInt(1);
-            }
+            eid = ELECTION.current().active();
+            if (eid < 0) return "ERROR:No active election";
+        } catch (SQLException e) { return "ERROR:"+e.getMessage(); }
+
+        /* from here until it is queued the ballot holds up the final count of eid; an election
+           that finished meanwhile is seen by the second look – or waits for this ballot */
+        RESULTS.casting(eid);
+        try {
+            return castBallot(eid, vk, seatsRaw, candsRaw);
+        } finally {
+            RESULTS.cast(eid);
+        }
+    }
 
-            /* candidate belongs to that seat? */
-            try (PreparedStatement ps=c.prepareStatement(
-                    "SELECT 1 FROM Candidates WHERE CNIC=? AND ConstitutionSeat=?")) {
-                ps.setString(1,cand); ps.setString(2,seat);
-                if (!ps.executeQuery().next()) return "ERROR:Candidate not on seat";
+    private static String castBallot(int eid, long vk, String[] seatsRaw, String[] candsRaw) {
+        String voter;                                       // as spelled in Users – Votes compares strings
+        int    n     = seatsRaw.length;
+        List<VoteIngest.Vote> ballot = new ArrayList<>(n);
+
+        /* still Started, registered voter, each candidate belongs to its seat? – all from memory.
+           An unknown voter must not reach the group commit: its foreign key would fail the whole batch */
+        try {
+            if (ELECTION.current().active() != eid) return "ERROR:No active election";
+            voter = vk < 0 ? null : TURNOUT.voter(vk);
+            if (voter == null) return "ERROR:Voter not registered";
+            for (int i = 0; i < n; i++) {
+                String seat = seatsRaw[i].trim().toUpperCase();
+                String cand = candsRaw[i].trim();
+                for (VoteIngest.Vote v : ballot)
+                    if (v.seat().equals(seat)) return "ERROR:Seat " + seat + " twice on one ballot";
+                if (!CANDIDATES.contains(seat, Cnic.key(cand)))
+                    return "ERROR:Candidate not on seat" + (n > 1 ? " " + seat : "");
+                ballot.add(new VoteIngest.Vote(eid, voter, seat, CANDIDATES.info(cand).cnic()));   // as in Candidates
             }
+        } catch (SQLException e) { return "ERROR:"+e.getMessage(); }
 
-            /* insert */
-            String ins="INSERT INTO Votes (ElectionID,VoterCNIC,Seat,CandidateCNIC) VALUES (?,?,?,?)";
-            try (PreparedStatement ps=c.prepareStatement(ins)) {
-                ps.setInt(1,eid); ps.setString(2,voter);
-                ps.setString(3,seat); ps.setString(4,cand);
-                ps.executeUpdate();
-                return "OK:Vote cast";
-            } catch (SQLException ex) {
-                return ex.getMessage().contains("uniq_vote")
-                       ? "ERROR:Already voted" : "ERROR:"+ex.getMessage();
+        /* already voted? – re‑submitted ballots stop here */
+        try {
+            for (int i = 0; i < n; i++) {
+                if (!VOTED.add(eid, ballot.get(i).seat(), vk)) {
+                    for (int j = 0; j < i; j++) VOTED.remove(eid, ballot.get(j).seat(), vk);
+                    return VoteIngest.DUPLICATE;
+                }
             }
         } catch (SQLException e) { return "ERROR:"+e.getMessage(); }
+
+        /* with the write‑ahead log the ballot is acknowledged once it is on local disk,
+           otherwise once its group‑commit batch is in MySQL */
+        String r = WAL != null ? WAL.submit(ballot) : VOTES.submit(ballot);
+        if (r.startsWith("ERROR") && !r.equals(VoteIngest.DUPLICATE))
+            for (VoteIngest.Vote v : ballot) VOTED.remove(eid, v.seat(), vk);
+        return r;
+    }
+
+    /* data = voterCnic[,Seat] → YES / NO for the active election (any seat if none given) */
+    private static String hasVoted(String csv) {
+        String[] p = csv.split(",",2);
+        long vk = Cnic.key(p[0].trim());
+        if (vk < 0) return "ERROR:bad CNIC";
+        String seat = p.length > 1 && !p[1].isBlank() ? p[1].trim().toUpperCase() : null;
+        try {
+            int eid = ELECTION.current().active();
+            if (eid < 0) return "ERROR:No active election";
+            return VOTED.contains(eid, seat, vk) ? "YES" : "NO";
+        } catch (SQLException e) { return "ERROR:"+e.getMessage(); }
+    }
+
+    /* data = Seat|Party[,version]
+       finished‑election results through the cache.  With a version the reply is
+       NOT_MODIFIED if it is still current, else the table behind a VERSION,n row */
+    private static Reply results(String cmd, String data) {
+        String arg  = data;
+        long   have = -1;
+        int    comma = data.lastIndexOf(',');
+        if (comma >= 0 && data.substring(comma + 1).trim().matches("\\d{1,18}")) {
+            have = Long.parseLong(data.substring(comma + 1).trim());
+            arg  = data.substring(0, comma);
+        }
+
+        long v = CACHE.version();
+        if (have == v) { CACHE.notModified(); return Reply.line(ResultCache.NOT_MODIFIED); }
+
+        boolean seat = cmd.equals("getSeatResults");
+        String  a    = arg;
+        String  key  = cmd + "|" + (seat ? a.trim().toUpperCase() : PartyDirectory.key(a));
+        Reply r;
+        try {
+            r = CACHE.get(key, () -> {
+                try (Connection c = POOL.borrow()) { return seat ? getSeatResults(c, a) : getPartyResults(c, a); }
+            });
+        } catch (Exception e) { return Reply.line("ERROR:"+e.getMessage()); }
+        if (have < 0 || r.isError()) return r;
+
+        List<Object[]> rows = new ArrayList<>();
+        rows.add(new Object[]{ "VERSION", v });
+        if (r.isTable()) rows.addAll(r.rows); else rows.add(new Object[]{ r.line });
+        return Reply.rows(rows, "");
     }
 
-    /* results for one seat of finished elections
-       return: candCNIC,candName,party,votes ; … */
-    private static String getSeatResults(Connection c,String seatRaw){
+    /* results of finished elections – read from Election_Results, written once at the close */
+    private static Reply getSeatResults(Connection c,String seatRaw){
         String seat = seatRaw.trim().toUpperCase();
         String sql = """
-            SELECT v.CandidateCNIC,c.CandidateName,c.PartyName,COUNT(*) AS Votes
-              FROM Votes v
-              JOIN Election_Time e ON e.ID=v.ElectionID
-              JOIN Candidates    c ON c.CNIC=v.CandidateCNIC
-             WHERE v.Seat=? AND e.Status='Finished'
-             GROUP BY v.CandidateCNIC,c.CandidateName,c.PartyName
+            SELECT CandidateCNIC,CandidateName,PartyName,CAST(SUM(Votes) AS SIGNED) AS Votes
+              FROM Election_Results
+             WHERE Seat=?
+             GROUP BY CandidateCNIC,CandidateName,PartyName
              ORDER BY Votes DESC
             """;
         try (PreparedStatement ps=c.prepareStatement(sql)){
             ps.setString(1,seat);
-            ResultSet rs=ps.executeQuery();
-            StringBuilder sb=new StringBuilder();
-            while(rs.next()){
-                if(sb.length()>0) sb.append(';');
-                sb.append(rs.getString(1)).append(',')
-                  .append(rs.getString(2)).append(',')
-                  .append(rs.getString(3)).append(',')
-                  .append(rs.getInt(4));
+            return table(ps.executeQuery(), "NO_RESULTS");
+        }catch(SQLException e){ return Reply.line("ERROR:"+e.getMessage());}
+    }
+
+    /* data = Seat → running count of the active election (admin live view) */
+    private static Reply getLiveResults(String seatRaw){
+        try {
+            int eid = ELECTION.current().active();
+            if (eid < 0) return Reply.line("ERROR:No active election");
+            return seatTable(TALLIES.seat(eid, seatRaw.trim().toUpperCase()));
+        } catch (SQLException e) { return Reply.line("ERROR:"+e.getMessage()); }
+    }
+
+    /* data = NA|PP[,page[,electionId]]   (default: the running election, else the last finished)
+       reply = PAGE,page,pages,election
+               PARTY,party,seatsWon,votes        … page 0 only
+               SEAT,seat,winnerCNIC,winnerName,winnerParty,winnerVotes,
+                    runnerUpCNIC,runnerUpName,runnerUpParty,runnerUpVotes,margin,voted,registered  … */
+    private static Reply getNationalResults(String data) {
+        String[] p = data.split(",", -1);
+        String assembly = p[0].trim().toUpperCase();
+        if (!assembly.equals("NA") && !assembly.equals("PP")) return Reply.line("ERROR:assembly must be NA or PP");
+        try {
+            int page = p.length > 1 && !p[1].isBlank() ? Integer.parseInt(p[1].trim()) : 0;
+            int eid  = p.length > 2 && !p[2].isBlank() ? Integer.parseInt(p[2].trim()) : -1;
+            if (eid < 0) {
+                ElectionState.Snapshot s = ELECTION.current();
+                eid = s.active() > 0 ? s.active() : s.finished().stream().max(Integer::compare).orElse(-1);
             }
-            return sb.length()==0 ? "NO_RESULTS" : sb.toString();
-        }catch(SQLException e){ return "ERROR:"+e.getMessage();}
+            if (eid < 0) return Reply.line("ERROR:No election");
+
+            NationalResults.Summary sum = NATIONAL.get(eid, assembly);
+            int pages = Math.max(1, (sum.seats().size() + NATIONAL_PAGE - 1) / NATIONAL_PAGE);
+            if (page < 0 || page >= pages) return Reply.line("ERROR:no page " + page);
+
+            List<Object[]> rows = new ArrayList<>();
+            rows.add(new Object[]{ "PAGE", page, pages, eid });
+            if (page == 0)
+                for (NationalResults.Party x : sum.parties())
+                    rows.add(new Object[]{ "PARTY", x.party(), x.seats(), x.votes() });
+            for (NationalResults.Seat s : sum.seats().subList(page * NATIONAL_PAGE,
+                                                             Math.min(sum.seats().size(), (page + 1) * NATIONAL_PAGE)))
+                rows.add(new Object[]{ "SEAT", s.seat(),
+                        s.winner(), s.winnerName(), s.winnerParty(), s.winnerVotes(),
+                        s.runnerUp(), s.runnerUpName(), s.runnerUpParty(), s.runnerUpVotes(),
+                        s.margin(), s.voted(), s.registered() });
+            return Reply.rows(rows, "NO_RESULTS");
+        } catch (NumberFormatException e) { return Reply.line("ERROR:bad page or election");
+        } catch (SQLException e) { return Reply.line("ERROR:"+e.getMessage()); }
     }
-    
+
+    /* data = level[,name][,gender][,electionId]
+       level = province|division|district|city|na|pp|all, name = only that unit,
+       gender = split each unit into Male/Female; election as for getNationalResults
+       reply = unit[,gender],registered,voted,turnout% ; … */
+    private static Reply getTurnout(String data) {
+        String[] p = data.split(",", -1);
+        Turnout.Level level;
+        try { level = Turnout.Level.valueOf(p[0].trim().toUpperCase()); }
+        catch (IllegalArgumentException e) { return Reply.line("ERROR:unknown level " + p[0]); }
+        String  only     = p.length > 1 ? p[1] : null;
+        boolean byGender = p.length > 2 && p[2].trim().equalsIgnoreCase("gender");
+        try {
+            int eid = p.length > 3 && !p[3].isBlank() ? Integer.parseInt(p[3].trim()) : -1;
+            if (eid < 0) {
+                ElectionState.Snapshot s = ELECTION.current();
+                eid = s.active() > 0 ? s.active() : s.finished().stream().max(Integer::compare).orElse(-1);
+            }
+            if (eid < 0) return Reply.line("ERROR:No election");
+
+            List<Object[]> rows = new ArrayList<>();
+            for (Turnout.Row r : TURNOUT.report(eid, level, only, byGender)) {
+                String pct = String.format(java.util.Locale.ROOT, "%.2f", r.registered() == 0 ? 0.0 : 100.0 * r.voted() / r.registered());
+                rows.add(byGender ? new Object[]{ r.unit(), r.gender(), r.registered(), r.voted(), pct }
+                                  : new Object[]{ r.unit(), r.registered(), r.voted(), pct });
+            }
+            return Reply.rows(rows, "NO_MATCH");
+        } catch (NumberFormatException e) { return Reply.line("ERROR:bad election");
+        } catch (SQLException e) { return Reply.line("ERROR:"+e.getMessage()); }
+    }
+
+    /** CandidateCNIC, CandidateName, PartyName, Votes – most votes first */
+    private static Reply seatTable(Map<String, Long> votes) throws SQLException {
+        List<Object[]> rows = new ArrayList<>(votes.size());
+        for (Map.Entry<String, Long> v : votes.entrySet()) {
+            CandidateIndex.Info i = CANDIDATES.info(v.getKey());
+            rows.add(new Object[]{ v.getKey(), i == null ? null : i.name(), i == null ? null : i.party(), v.getValue() });
+        }
+        rows.sort((x, y) -> Long.compare((Long) y[3], (Long) x[3]));
+        return Reply.rows(rows, "NO_RESULTS");
+    }
+
     /** --------------------------------------------------------------
- *  getPartyResults  – case‑insensitive vote totals for one party
- *  data  = party name as typed by the client
+ *  getPartyResults  – vote totals for one party
+ *  data  = party name as typed by the client, any case
  *  reply = seat,votes ; seat,votes ; …  |  NO_RESULTS  |  ERROR:…
+ *  The name resolves to Party.ID in memory; rows are found via idx_results_party.
  * -------------------------------------------------------------- */
-private static String getPartyResults(Connection c, String partyRaw) {
+private static Reply getPartyResults(Connection c, String partyRaw) {
     String sql = """
-        SELECT v.Seat, COUNT(*) AS Votes
-          FROM Votes v
-          JOIN Election_Time e ON e.ID = v.ElectionID
-          JOIN Candidates    c ON c.CNIC = v.CandidateCNIC
-         WHERE e.Status = 'Finished'
-           AND LOWER(c.PartyName) = LOWER(?)      -- ← case‑insensitive
-         GROUP BY v.Seat
-         ORDER BY v.Seat
+        SELECT Seat, CAST(SUM(Votes) AS SIGNED) AS Votes
+          FROM Election_Results
+         WHERE PartyID = ?
+         GROUP BY Seat
+         ORDER BY Seat
         """;
     try (PreparedStatement ps = c.prepareStatement(sql)) {
-        ps.setString(1, partyRaw.trim());
-        ResultSet rs = ps.executeQuery();
-
-        StringBuilder sb = new StringBuilder();
-        while (rs.next()) {
-            if (sb.length() > 0) sb.append(';');
-            sb.append(rs.getString("Seat")).append(',')
-              .append(rs.getInt("Votes"));
-        }
-        return sb.length() == 0 ? "NO_RESULTS" : sb.toString();
+        PartyDirectory.Party p = PARTIES.byName(partyRaw);
+        if (p == null) return Reply.line("NO_RESULTS");
+        ps.setInt(1, p.id());
+        return table(ps.executeQuery(), "NO_RESULTS");
 
-    } catch (SQLException e) { return "ERROR:" + e.getMessage(); }
+    } catch (SQLException e) { return Reply.line("ERROR:" + e.getMessage()); }
 }
 
     /* ===================================================== */
     /*  COMMON helpers                                       */
     /* ===================================================== */
 
+    /** every row/column of rs as a typed table; integers stay integers */
+    private static Reply table(ResultSet rs, String whenEmpty) throws SQLException {
+        int n = rs.getMetaData().getColumnCount();
+        List<Object[]> rows = new ArrayList<>();
+        while (rs.next()) {
+            Object[] r = new Object[n];
+            for (int i = 0; i < n; i++) {
+                Object o = rs.getObject(i + 1);
+                r[i] = o instanceof Integer || o instanceof Long ? o : rs.getString(i + 1);
+            }
+            rows.add(r);
+        }
+        return Reply.rows(rows, whenEmpty);
+    }
+
+    /**
+     * Keyset paging for the list commands.  data = [limit][,cursor]: limit defaults to
+     * PAGE_SIZE and is capped at PAGE_MAX; cursor is the NEXT value of the previous page.
+     * Rows are ordered by keys (which must be selected columns and unique together);
+     * a page that is not the last ends with a NEXT,cursor row.  The cursor is the last
+     * row's keys, Base64 – the next page starts right after it, with no OFFSET scan.
+     *
+     * Empty data is a caller from before paging: it gets every row and no NEXT row,
+     * or an ERROR if there are more than UNPAGED_MAX.
+     */
+    private static Reply page(Connection c, String select, String where, String[] keys, String data) {
+        boolean whole = data.isBlank();
+        String[] p = data.split(",", 2);
+        int limit;
+        try { limit = whole ? UNPAGED_MAX : p[0].isBlank() ? PAGE_SIZE : Math.min(PAGE_MAX, Integer.parseInt(p[0].trim())); }
+        catch (NumberFormatException e) { return Reply.line("ERROR:bad page size"); }
+        if (limit < 1) return Reply.line("ERROR:bad page size");
+
+        String[] after = null;
+        if (p.length > 1 && !p[1].isBlank()) {
+            try {
+                after = new String(Base64.getUrlDecoder().decode(p[1].trim()),
+                                   StandardCharsets.UTF_8).split("\u001F", -1);
+            } catch (IllegalArgumentException e) { return Reply.line("ERROR:bad cursor"); }
+            if (after.length != keys.length) return Reply.line("ERROR:bad cursor");
+        }
+
+        /* (k1 > ?) OR (k1 = ? AND k2 > ?) …  – spelled out so MySQL uses the index range */
+        StringBuilder sql = new StringBuilder(select);
+        List<String>  args = new ArrayList<>();
+        List<String>  conds = new ArrayList<>();
+        if (where != null) conds.add(where);
+        if (after != null) {
+            StringBuilder or = new StringBuilder("(");
+            for (int i = 0; i < keys.length; i++) {
+                if (i > 0) or.append(" OR ");
+                or.append('(');
+                for (int j = 0; j < i; j++) { or.append(keys[j]).append("=? AND "); args.add(after[j]); }
+                or.append(keys[i]).append(">?)");
+                args.add(after[i]);
+            }
+            conds.add(or.append(')').toString());
+        }
+        if (!conds.isEmpty()) sql.append(" WHERE ").append(String.join(" AND ", conds));
+        sql.append(" ORDER BY ").append(String.join(",", keys)).append(" LIMIT ").append(limit + 1);
+
+        try (PreparedStatement ps = c.prepareStatement(sql.toString())) {
+            for (int i = 0; i < args.size(); i++) ps.setString(i + 1, args.get(i));
+            ResultSet rs = ps.executeQuery();
+            int n = rs.getMetaData().getColumnCount();
+            List<Object[]> rows = new ArrayList<>(Math.min(limit, 1024) + 1);
+            String[] last = new String[keys.length];
+            while (rs.next()) {
+                if (rows.size() == limit && whole)
+                    return Reply.line("ERROR:more than " + UNPAGED_MAX + " rows – ask for pages: limit[,cursor]");
+                if (rows.size() == limit) {
+                    String cur = String.join("\u001F", last);
+                    rows.add(new Object[]{ "NEXT", Base64.getUrlEncoder().withoutPadding()
+                            .encodeToString(cur.getBytes(StandardCharsets.UTF_8)) });
+                    break;
+                }
+                Object[] r = new Object[n];
+                for (int i = 0; i < n; i++) {
+                    Object o = rs.getObject(i + 1);
+                    r[i] = o instanceof Integer || o instanceof Long ? o : rs.getString(i + 1);
+                }
+                for (int k = 0; k < keys.length; k++) last[k] = rs.getString(keys[k]);
+                rows.add(r);
+            }
+            return Reply.rows(rows, "");
+        } catch (SQLException e) { return Reply.line("ERROR:" + e.getMessage()); }
+    }
+
     private static String checkCNIC(Connection c,String cnic){
         try (PreparedStatement ps=c.prepareStatement("SELECT 1 FROM Users WHERE CNIC=?")) {
             ps.setString(1,cnic);
@@ -355,19 +1293,15 @@ private static String getPartyResults(Connection c, String partyRaw) {
         } catch(SQLException e){ return "ERROR:"+e.getMessage(); }
     }
 
-    private static String getConstituency(Connection c,String code){
+    private static Reply getConstituency(Connection c,String code){
         String sql = """
             SELECT Province,Division,District,City,NAConstituency,ProvincialConstituency
             FROM Constituencies WHERE CityCode=?
             """;
         try (PreparedStatement ps=c.prepareStatement(sql)){
             ps.setString(1,code);
-            ResultSet rs=ps.executeQuery();
-            if(!rs.next()) return "NOT_FOUND";
-            return String.join(",",
-                    rs.getString(1),rs.getString(2),rs.getString(3),
-                    rs.getString(4),rs.getString(5),rs.getString(6));
-        }catch(SQLException e){ return "ERROR:"+e.getMessage(); }
+            return table(ps.executeQuery(), "NOT_FOUND");
+        }catch(SQLException e){ return Reply.line("ERROR:"+e.getMessage()); }
     }
 
     /* ===============  USERS (signup / login / pw)  =============== */
@@ -383,6 +1317,7 @@ private static String getPartyResults(Connection c, String partyRaw) {
         try(PreparedStatement ps=c.prepareStatement(sql)){
             for(int i=0;i<11;i++) ps.setString(i+1,f[i]);
             ps.executeUpdate();
+            TURNOUT.register(f[1],f[4],f[5],f[6],f[7],f[8],f[9],f[10]);
             return "SUCCESS";
         }catch(SQLException e){ return "ERROR:"+e.getMessage(); }
     }
@@ -447,85 +1382,52 @@ private static String getPartyResults(Connection c, String partyRaw) {
         try(PreparedStatement ps=c.prepareStatement(sql)){
             for(int i=0;i<6;i++) ps.setString(i+1,f[i]);
             ps.executeUpdate();
+            CANDIDATES.add(f[3], f[0], f[1], f[4]);
             return "SUCCESS";
         }catch(SQLException e){ return "ERROR:"+e.getMessage(); }
     }
 
-    private static String getAllCandidates(Connection c){
-        StringBuilder sb=new StringBuilder();
-        String sql="SELECT CNIC,CandidateName,ConstitutionType,ConstitutionSeat,PartyName,Symbol FROM Candidates ORDER BY ConstitutionSeat";
-        try(Statement st=c.createStatement(); ResultSet rs=st.executeQuery(sql)){
-            while(rs.next()){
-                if(sb.length()>0) sb.append(';');
-                sb.append(rs.getString(1)).append(',').append(rs.getString(2)).append(',')
-                  .append(rs.getString(3)).append(',').append(rs.getString(4)).append(',')
-                  .append(rs.getString(5)).append(',').append(rs.getString(6));
-            }
-            return sb.toString();
-        }catch(SQLException e){ return "ERROR:"+e.getMessage(); }
+    /* data = [limit][,cursor] – see page() */
+    private static Reply getAllCandidates(Connection c,String data){
+        String sql="SELECT CNIC,CandidateName,ConstitutionType,ConstitutionSeat,PartyName,Symbol FROM Candidates";
+        return page(c, sql, null, new String[]{"ConstitutionSeat","CNIC"}, data);
     }
 
-    private static String getCandidatesBySeat(Connection c,String seatRaw){
+    private static Reply getCandidatesBySeat(Connection c,String seatRaw){
         String seat=seatRaw.trim().toUpperCase();
-        if(!seat.matches("^(NA|PP)-\\d+$")) return "ERROR:bad seat format";
+        if(!seat.matches("^(NA|PP)-\\d+$")) return Reply.line("ERROR:bad seat format");
 
         String checkSql = seat.startsWith("NA")?
               "SELECT 1 FROM Constituencies WHERE NAConstituency=?":
               "SELECT 1 FROM Constituencies WHERE ProvincialConstituency=?";
         try(PreparedStatement chk=c.prepareStatement(checkSql)){
             chk.setString(1,seat);
-            if(!chk.executeQuery().next()) return "NO_SEAT";
-        }catch(SQLException e){ return "ERROR:"+e.getMessage(); }
+            if(!chk.executeQuery().next()) return Reply.line("NO_SEAT");
+        }catch(SQLException e){ return Reply.line("ERROR:"+e.getMessage()); }
 
-        StringBuilder sb=new StringBuilder();
         String sql="SELECT CNIC,CandidateName,ConstitutionType,ConstitutionSeat,PartyName,Symbol FROM Candidates WHERE ConstitutionSeat=?";
         try(PreparedStatement ps=c.prepareStatement(sql)){
             ps.setString(1,seat);
-            ResultSet rs=ps.executeQuery();
-            while(rs.next()){
-                if(sb.length()>0) sb.append(';');
-                sb.append(rs.getString(1)).append(',').append(rs.getString(2)).append(',')
-                  .append(rs.getString(3)).append(',').append(rs.getString(4)).append(',')
-                  .append(rs.getString(5)).append(',').append(rs.getString(6));
-            }
-            return sb.length()==0?"NO_CANDIDATE":sb.toString();
-        }catch(SQLException e){ return "ERROR:"+e.getMessage(); }
+            return table(ps.executeQuery(), "NO_CANDIDATE");
+        }catch(SQLException e){ return Reply.line("ERROR:"+e.getMessage()); }
     }
 
     /* ===============  PARTIES  =============== */
 
-private static String getAllParties(Connection c) {
-        StringBuilder sb = new StringBuilder();
-        String sql = "SELECT PartyName,Symbol,LeaderCNIC FROM Party ORDER BY PartyName";
-        try (Statement st = c.createStatement();
-             ResultSet rs = st.executeQuery(sql)) {
-            while (rs.next()) {
-                if (sb.length() > 0) sb.append(';');
-                sb.append(rs.getString(1)).append(',')
-                  .append(rs.getString(2)).append(',')
-                  .append(rs.getString(3));
-            }
-            return sb.toString();
-        } catch (SQLException e) { return "ERROR:" + e.getMessage(); }
+    /* data = [limit][,cursor] – see page() */
+    private static Reply getAllParties(Connection c, String data) {
+        String sql = "SELECT PartyName,Symbol,LeaderCNIC FROM Party";
+        return page(c, sql, null, new String[]{"PartyName"}, data);
     }
 
-    private static String searchPartyByName(Connection c, String txt) {
-
-        String key = "%" + txt.trim().toLowerCase() + "%";
-        StringBuilder sb = new StringBuilder();
-        String sql = "SELECT PartyName,Symbol,LeaderCNIC FROM Party "
-                   + "WHERE LOWER(PartyName) LIKE ? ORDER BY PartyName";
-        try (PreparedStatement ps = c.prepareStatement(sql)) {
-            ps.setString(1, key);
-            ResultSet rs = ps.executeQuery();
-            while (rs.next()) {
-                if (sb.length() > 0) sb.append(';');
-                sb.append(rs.getString(1)).append(',')
-                  .append(rs.getString(2)).append(',')
-                  .append(rs.getString(3));
-            }
-            return sb.length() == 0 ? "NO_MATCH" : sb.toString();
-        } catch (SQLException e) { return "ERROR:" + e.getMessage(); }
+    /* substring match on the case‑folded name, answered from PARTIES */
+    private static Reply searchPartyByName(String txt) {
+        try {
+            List<Object[]> rows = new ArrayList<>();
+            for (PartyDirectory.Party p : PARTIES.search(txt))
+                rows.add(new Object[]{ p.name(), p.symbol(), p.leader() });
+            return Reply.rows(rows, "NO_MATCH");
+        } catch (SQLException e) { return Reply.line("ERROR:" + e.getMessage()); }
     }
 
 
@@ -533,34 +1435,17 @@ private static String getAllParties(Connection c) {
 
 /* ===============  VOTERS (updated)  =============== */
 
-/** full voter dump without the Admin record */
-private static String getAllVoters(Connection c){
-    StringBuilder sb = new StringBuilder();
-    String sql = """
-        SELECT CNIC,Name,PhoneNo,City,Status
-        FROM Users
-        WHERE Status <> 'Admin'                 --  🔹 filter Admin out
-        ORDER BY Name
-        """;
-    try (Statement st = c.createStatement();
-         ResultSet rs = st.executeQuery(sql)) {
-
-        while (rs.next()) {
-            if (sb.length() > 0) sb.append(';');
-            sb.append(rs.getString("CNIC")).append(',')
-              .append(rs.getString("Name")).append(',')
-              .append(rs.getString("PhoneNo")).append(',')
-              .append(rs.getString("City")).append(',')
-              .append(rs.getString("Status"));
-        }
-        return sb.toString();
-    } catch (SQLException e) { return "ERROR:" + e.getMessage(); }
+/** voters without the Admin record, a page at a time (by Name, CNIC – idx_users_name)
+    data = [limit][,cursor] – see page() */
+private static Reply getAllVoters(Connection c, String data){
+    String sql = "SELECT CNIC,Name,PhoneNo,City,Status FROM Users";
+    return page(c, sql, "Status <> 'Admin'", new String[]{"Name","CNIC"}, data);
 }
 
 /** exact search by CNIC — also ignores the Admin row */
 /** exact search by CNIC — ignores Admin row
     returns: CNIC,Name,Phone,City,Status,NASeat,PPSeat           */
-private static String searchVoterByCnic(Connection c, String cnic){
+private static Reply searchVoterByCnic(Connection c, String cnic){
     String sql = """
         SELECT CNIC,Name,PhoneNo,City,Status,
                NAConstituency,ProvincialConstituency      -- 🔹 new fields
@@ -569,17 +1454,8 @@ private static String searchVoterByCnic(Connection c, String cnic){
         """;
     try (PreparedStatement ps = c.prepareStatement(sql)) {
         ps.setString(1, cnic);
-        ResultSet rs = ps.executeQuery();
-        if (!rs.next()) return "NO_MATCH";
-
-        return rs.getString("CNIC")     + ',' +
-               rs.getString("Name")     + ',' +
-               rs.getString("PhoneNo")  + ',' +
-               rs.getString("City")     + ',' +
-               rs.getString("Status")   + ',' +
-               rs.getString("NAConstituency")            + ',' +   // 🔹
-               rs.getString("ProvincialConstituency");               // 🔹
-    } catch (SQLException e) { return "ERROR:" + e.getMessage(); }
+        return table(ps.executeQuery(), "NO_MATCH");
+    } catch (SQLException e) { return Reply.line("ERROR:" + e.getMessage()); }
 }
 
 
@@ -608,19 +1484,18 @@ private static String searchVoterByCnic(Connection c, String cnic){
         String[] f=csv.split(",",-1);
         if(f.length!=3) return "ERROR:bad field count";
 
-        try(PreparedStatement dup=c.prepareStatement(
-            "SELECT 1 FROM Party WHERE LOWER(PartyName)=? OR LOWER(Symbol)=? OR LeaderCNIC=?")){
-            dup.setString(1,f[0].toLowerCase());
-            dup.setString(2,f[1].toLowerCase());
-            dup.setString(3,f[2]);
-            if(dup.executeQuery().next()) return "ERROR:duplicate";
+        try{
+            if(PARTIES.taken(f[0],f[1],f[2])) return "ERROR:duplicate";
         }catch(SQLException e){ return "ERROR:"+e.getMessage(); }
 
+        // uniq_party_key / uniq_symbol_key catch a concurrent registration of the same name
         String sql="INSERT INTO Party (PartyName,Symbol,LeaderCNIC) VALUES (?,?,?)";
         try(PreparedStatement ps=c.prepareStatement(sql)){
-            ps.setString(1,f[0]); ps.setString(2,f[1]); ps.setString(3,f[2]);
+            ps.setString(1,f[0].trim()); ps.setString(2,f[1].trim()); ps.setString(3,f[2]);
             ps.executeUpdate();
+            PARTIES.load(c);
             return "SUCCESS";
+        }catch(SQLIntegrityConstraintViolationException e){ return "ERROR:duplicate";
         }catch(SQLException e){ return "ERROR:"+e.getMessage(); }
     }
 }
@@ -0,0 +1,143 @@
+package server;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Binary framing, negotiated per connection: the client sends the text line
+ * "hello;bin/1", the server answers "BIN/1" and every byte after that is frames.
+ * Clients that never say hello keep talking  cmd;csv  lines.
+ *
+ *   request : int32 len | int32 reqId | u16 opcode | u16 nFields | field…
+ *   reply   : int32 len | int32 reqId | u16 opcode | u8 kind | LINE: field
+ *                                                            | ROWS: int32 nRows, (u16 nFields, field…)…
+ *   field   : u8 type | STR: int32 len, UTF‑8 | INT: int32 | LONG: int64 | NULL
+ *
+ * len counts the bytes after itself, all integers big‑endian.
+ * opcode = index in COMMANDS + 1; opcode 0 carries the command name as its first field.
+ * Request fields are joined with ',' into the usual data string – only replies are
+ * typed end to end; a request value containing ',' still splits like on the text protocol.
+ */
+public final class Wire {
+
+    private Wire() {}
+
+    static final String HELLO     = "hello";
+    static final String VERSION   = "bin/1";
+    static final String ACK       = "BIN/1";
+    static final int    MAX_FRAME = 1 << 20;
+
+    static final byte T_NULL = 0, T_STR = 1, T_INT = 2, T_LONG = 3;
+    static final byte K_LINE = 0, K_ROWS = 1;
+    static final byte PING   = 1;                    // opcode of "ping"
+
+    /** append only – the position is the opcode; the client looks it up through opcode() */
+    static final String[] COMMANDS = {
+        "ping", "poolStats",
+        "checkCNIC", "verifyCNIC", "getConstituency", "signupUser", "login", "updatePassword", "getUserName",
+        "getParties", "checkCandidate", "registerCandidate", "getAllCandidates", "getCandidatesBySeat",
+        "getAllParties", "searchPartyByName", "getPartiesCount", "getCandidatesCount",
+        "getAllVoters", "searchVoterByCnic", "getVotersNumber",
+        "registerElectionTime", "stopElectionTime", "getElectionStatus",
+        "castVote", "getSeatResults", "getPartyResults", "selectElectionStopTime",
+        "addConstituency", "registerParty",
+        "batch",
+        "hasVoted", "castBallot", "getLiveResults", "cacheStats", "getNationalResults",
+        "getTurnout", "stats",
+    };
+
+    private static final Map<String, Integer> OPCODES = new HashMap<>();
+    static {
+        for (int i = 0; i < COMMANDS.length; i++) OPCODES.put(COMMANDS[i], i + 1);
+    }
+
+    /** opcode of cmd, or 0 – a command without one is sent by name */
+    public static int opcode(String cmd) {
+        return OPCODES.getOrDefault(cmd, 0);
+    }
+
+    record Request(int id, int opcode, String cmd, String data) { }
+
+    /* ========================================================= */
+
+    /** body = frame without its length prefix */
+    static Request decode(byte[] body) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(body));
+        int id     = in.readInt();
+        int opcode = in.readUnsignedShort();
+        int n      = in.readUnsignedShort();
+
+        String cmd = null;
+        if (opcode > 0 && opcode <= COMMANDS.length) cmd = COMMANDS[opcode - 1];
+        else if (opcode == 0 && n > 0) { cmd = String.valueOf(readField(in)); n--; }
+
+        StringBuilder data = new StringBuilder();
+        for (int i = 0; i < n; i++) {
+            if (i > 0) data.append(',');
+            Object f = readField(in);
+            if (f != null) data.append(f);
+        }
+        return new Request(id, opcode, cmd == null ? "?" + opcode : cmd, data.toString());
+    }
+
+    /** complete frame including its length prefix */
+    static byte[] encode(int id, int opcode, Reply r) {
+        ByteArrayOutputStream buf = new ByteArrayOutputStream(r.isTable() ? r.rows.size() * 64 + 16 : 64);
+        DataOutputStream out = new DataOutputStream(buf);
+        try {
+            out.writeInt(0);                        // patched below
+            out.writeInt(id);
+            out.writeShort(opcode);
+            if (!r.isTable()) {
+                out.writeByte(K_LINE);
+                writeField(out, r.line);
+            } else {
+                out.writeByte(K_ROWS);
+                out.writeInt(r.rows.size());
+                for (Object[] row : r.rows) {
+                    out.writeShort(row.length);
+                    for (Object f : row) writeField(out, f);
+                }
+            }
+        } catch (IOException e) { throw new UncheckedIOException(e); }   // cannot happen on a byte array
+
+        byte[] frame = buf.toByteArray();
+        int len = frame.length - 4;
+        frame[0] = (byte) (len >>> 24); frame[1] = (byte) (len >>> 16);
+        frame[2] = (byte) (len >>> 8);  frame[3] = (byte) len;
+        return frame;
+    }
+
+    /* ---------- fields ---------- */
+
+    static void writeField(DataOutputStream out, Object f) throws IOException {
+        if (f == null)                 out.writeByte(T_NULL);
+        else if (f instanceof Integer i) { out.writeByte(T_INT);  out.writeInt(i); }
+        else if (f instanceof Long l)    { out.writeByte(T_LONG); out.writeLong(l); }
+        else {
+            byte[] b = f.toString().getBytes(StandardCharsets.UTF_8);
+            out.writeByte(T_STR);
+            out.writeInt(b.length);
+            out.write(b);
+        }
+    }
+
+    static Object readField(DataInputStream in) throws IOException {
+        byte t = in.readByte();
+        return switch (t) {
+            case T_NULL -> null;
+            case T_INT  -> in.readInt();
+            case T_LONG -> in.readLong();
+            case T_STR  -> {
+                int n = in.readInt();
+                if (n < 0 || n > MAX_FRAME) throw new IOException("bad string length " + n);
+                byte[] b = new byte[n];
+                in.readFully(b);
+                yield new String(b, StandardCharsets.UTF_8);
+            }
+            default -> throw new IOException("unknown field type " + t);
+        };
+    }
+}
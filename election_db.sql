@@ -37,10 +37,34 @@ CREATE TABLE IF NOT EXISTS Party (
     PartyName VARCHAR(100),
     Symbol VARCHAR(100),
     LeaderCNIC VARCHAR(15),
+    -- case‑folded copies so lookups by typed name are index seeks, not LOWER() scans
+    PartyKey  VARCHAR(100) AS (LOWER(TRIM(PartyName))) STORED,
+    SymbolKey VARCHAR(100) AS (LOWER(TRIM(Symbol)))    STORED,
     UNIQUE (PartyName),
-    UNIQUE (Symbol)
+    UNIQUE (Symbol),
+    UNIQUE KEY uniq_party_key  (PartyKey),
+    UNIQUE KEY uniq_symbol_key (SymbolKey),
+    INDEX idx_party_leader (LeaderCNIC)
 );
 
+/* === Party keys on an existing table (version‑neutral) ======= */
+SET @c :=
+  (SELECT COUNT(*)
+     FROM INFORMATION_SCHEMA.COLUMNS
+    WHERE TABLE_SCHEMA = DATABASE()
+      AND TABLE_NAME   = 'Party'
+      AND COLUMN_NAME  = 'PartyKey');
+SET @sql :=
+  IF(@c = 0,
+     'ALTER TABLE Party
+        ADD COLUMN PartyKey  VARCHAR(100) AS (LOWER(TRIM(PartyName))) STORED,
+        ADD COLUMN SymbolKey VARCHAR(100) AS (LOWER(TRIM(Symbol)))    STORED,
+        ADD UNIQUE KEY uniq_party_key  (PartyKey),
+        ADD UNIQUE KEY uniq_symbol_key (SymbolKey),
+        ADD INDEX idx_party_leader (LeaderCNIC)',
+     'SELECT \"Party keys already exist\"');
+PREPARE stmt FROM @sql; EXECUTE stmt; DEALLOCATE PREPARE stmt;
+
 CREATE TABLE IF NOT EXISTS Candidates (
     ID                 INT AUTO_INCREMENT PRIMARY KEY,
     CNIC               VARCHAR(13)  NOT NULL,
@@ -52,6 +76,7 @@ CREATE TABLE IF NOT EXISTS Candidates (
 
     -- one candidate per Party per Seat:
     UNIQUE KEY uniq_party_seat (ConstitutionType, ConstitutionSeat, PartyName),
+    INDEX idx_seat_cnic (ConstitutionSeat, CNIC),
 
     -- (optional but common) reference back to Party table
     FOREIGN KEY (PartyName) REFERENCES Party (PartyName),
@@ -119,6 +144,71 @@ WHERE  e.Status = 'Finished'
 GROUP  BY e.ID, v.Seat, v.CandidateCNIC
 ORDER  BY e.ID, v.Seat, Votes DESC;
 
+/* === covering index for per‑seat counts (version‑neutral) === */
+SET @ix :=
+  (SELECT COUNT(*)
+     FROM INFORMATION_SCHEMA.STATISTICS
+    WHERE TABLE_SCHEMA = DATABASE()
+      AND TABLE_NAME   = 'Votes'
+      AND INDEX_NAME   = 'idx_votes_result');
+SET @sql :=
+  IF(@ix = 0,
+     'ALTER TABLE Votes ADD INDEX idx_votes_result (ElectionID, Seat, CandidateCNIC)',
+     'SELECT \"idx_votes_result already exists\"');
+PREPARE stmt FROM @sql; EXECUTE stmt; DEALLOCATE PREPARE stmt;
+
+/* === keyset paging of getAllVoters: ORDER BY Name, CNIC (version‑neutral) === */
+SET @ix :=
+  (SELECT COUNT(*)
+     FROM INFORMATION_SCHEMA.STATISTICS
+    WHERE TABLE_SCHEMA = DATABASE()
+      AND TABLE_NAME   = 'Users'
+      AND INDEX_NAME   = 'idx_users_name');
+SET @sql :=
+  IF(@ix = 0,
+     'ALTER TABLE Users ADD INDEX idx_users_name (Name, CNIC)',
+     'SELECT \"idx_users_name already exists\"');
+PREPARE stmt FROM @sql; EXECUTE stmt; DEALLOCATE PREPARE stmt;
+
+/* === Election_Results – written once when an election finishes === */
+CREATE TABLE IF NOT EXISTS Election_Results (
+    ElectionID    INT          NOT NULL,
+    Seat          VARCHAR(10)  NOT NULL,
+    CandidateCNIC VARCHAR(13)  NOT NULL,
+    CandidateName VARCHAR(100) NOT NULL,
+    PartyName     VARCHAR(100) NOT NULL,
+    PartyID       INT          NULL,                  -- Party.ID, resolved when the row is written
+    Votes         INT          NOT NULL,
+    Position      INT          NOT NULL,              -- 1 = winner
+    Margin        INT          NOT NULL,              -- lead over the next candidate on the seat
+    PRIMARY KEY (ElectionID, Seat, CandidateCNIC),
+    INDEX idx_results_seat  (Seat),
+    INDEX idx_results_party (PartyID),
+
+    FOREIGN KEY (ElectionID) REFERENCES Election_Time(ID) ON DELETE CASCADE
+);
+
+/* === Election_Results.PartyID on an existing table (version‑neutral) === */
+SET @c :=
+  (SELECT COUNT(*)
+     FROM INFORMATION_SCHEMA.COLUMNS
+    WHERE TABLE_SCHEMA = DATABASE()
+      AND TABLE_NAME   = 'Election_Results'
+      AND COLUMN_NAME  = 'PartyID');
+SET @sql :=
+  IF(@c = 0,
+     'ALTER TABLE Election_Results
+        ADD COLUMN PartyID INT NULL AFTER PartyName,
+        DROP INDEX idx_results_party,
+        ADD INDEX idx_results_party (PartyID)',
+     'SELECT \"Election_Results.PartyID already exists\"');
+PREPARE stmt FROM @sql; EXECUTE stmt; DEALLOCATE PREPARE stmt;
+
+UPDATE Election_Results r
+  JOIN Party p ON p.PartyKey = LOWER(TRIM(r.PartyName))
+   SET r.PartyID = p.ID
+ WHERE r.PartyID IS NULL;
+
 
 
 